@@ -0,0 +1,48 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import java.util.Random;
+
+public class ExtendableBoardTest {
+
+    /** a board agrees with the states of random games, move by move, and unmake restores it */
+    @Test
+    public void testAgreesWithState() {
+        Random random = new Random(0L);
+        ExtendableBoard board = new ExtendableBoard();
+        int[] expected = new int[89], actual = new int[89];
+        for (int game = 0; game < 100; game++) {
+            State<ExtendableTicTacToe> state = new ExtendableTicTacToe().start();
+            board.load(((ExtendableTicTacToe.EState) state).getPosition());
+            int moves = 0;
+            while (true) {
+                ExtendablePosition pos = ((ExtendableTicTacToe.EState) state).getPosition();
+                assertEquals(pos, board.position());
+                assertEquals(state.isTerminal(), board.isTerminal());
+                assertEquals((int) state.winner().orElse(-1), board.winner());
+                assertEquals(pos.canonical(), board.canonical());
+                for (int r = pos.getRowMin(); r < pos.getRowMax(); r++)
+                    for (int c = pos.getColMin(); c < pos.getColMax(); c++)
+                        assertEquals(pos.get(r, c), board.get(r, c));
+                if (state.isTerminal()) break;
+                int n = state.generateMoves(state.player(), expected);
+                assertEquals(n, board.moves(state.player(), actual));
+                for (int k = 0; k < n; k++) {
+                    assertEquals(expected[k], actual[k]);
+                    board.make(actual[k]);
+                    assertEquals(((ExtendableTicTacToe.EState) state.nextByCode(actual[k])).getPosition(), board.position());
+                    board.unmake();
+                }
+                int code = expected[random.nextInt(n)];
+                state = state.nextByCode(code);
+                board.make(code);
+                moves++;
+            }
+            // take back the whole game
+            for (; moves > 0; moves--) board.unmake();
+            assertEquals(ExtendablePosition.start(), board.position());
+        }
+    }
+}
@@ -3,8 +3,10 @@ package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 
 public class ExtendablePositionTest {
 
@@ -31,6 +33,25 @@ public class ExtendablePositionTest {
         assertEquals(-1, p2.get(3, 4));
     }
 
+    @Test
+    public void testZobrist() {
+        ExtendablePosition p = ExtendablePosition.start();
+        ExtendablePosition a = p.next(new PlaceMove(1, 3, 3)).next(new ExtendMove(0, Directions.N)).next(new PlaceMove(1, 4, 4));
+        ExtendablePosition b = p.next(new PlaceMove(1, 4, 4)).next(new ExtendMove(0, Directions.N)).next(new PlaceMove(1, 3, 3));
+        assertEquals(a, b);
+        assertEquals(a.zobrist(), b.zobrist());
+        assertNotEquals(p.zobrist(), p.next(new ExtendMove(1, Directions.N)).zobrist());
+
+        // the incremental key is the same as the key calculated from scratch
+        Cell[][] g = new Cell[9][9];
+        for (int r = 0; r < 9; r++)
+            for (int c = 0; c < 9; c++)
+                g[r][c] = (r < 6 && c >= 3 && c < 6) ? Cell.EMPTY : Cell.ZOMBIE;
+        g[3][3] = Cell.X;
+        g[4][4] = Cell.X;
+        assertEquals(a.zobrist(), new ExtendablePosition(g, 1, 3, 0, 6, 3, 6).zobrist());
+    }
+
     @Test
     public void testExtendMoves() {
     
@@ -78,6 +99,90 @@ public class ExtendablePositionTest {
         assertEquals(Optional.of(1), pD.winner());
     }
 
+    @Test
+    public void testWinnerAcrossBitboardHalves() {
+        // cell (r,c) is bit r*9+c: (7,0) is bit 63 and (7,1) is bit 64, in the other long of the bitboard
+        assertEquals(Optional.of(0), fullWindow(Cell.O, 7, 0, 7, 1, 7, 2).winner()); // horizontal
+        assertEquals(Optional.of(1), fullWindow(Cell.X, 6, 1, 7, 1, 8, 1).winner()); // vertical
+        assertEquals(Optional.of(0), fullWindow(Cell.O, 6, 2, 7, 1, 8, 0).winner()); // diagonal /
+        // bits 62, 63, 64 are consecutive but (6,8), (7,0), (7,1) are not a line
+        assertEquals(Optional.empty(), fullWindow(Cell.X, 6, 8, 7, 0, 7, 1).winner());
+    }
+
+    /** a fully extended window, empty except for three marks of cell at (r0,c0), (r1,c1), (r2,c2) */
+    private static ExtendablePosition fullWindow(Cell cell, int r0, int c0, int r1, int c1, int r2, int c2) {
+        Cell[][] g = new Cell[9][9];
+        for (Cell[] row : g) java.util.Arrays.fill(row, Cell.EMPTY);
+        g[r0][c0] = g[r1][c1] = g[r2][c2] = cell;
+        return new ExtendablePosition(g, cell == Cell.X ? 1 : 0, 3, 0, 9, 0, 9);
+    }
+
+    @Test
+    public void testCanonical() {
+        ExtendablePosition p = window(0, 3, "X..", "...", "...", "...", "..O", "...");
+        // a quarter turn, the reflections and a half turn, each in a different part of the board
+        assertEquals(p.canonical(), window(3, 0, ".....X", "......", ".O....").canonical());
+        assertEquals(p.canonical(), window(0, 4, "..X", "...", "...", "...", "O..", "...").canonical());
+        assertEquals(p.canonical(), window(2, 6, "...", "..O", "...", "...", "...", "X..").canonical());
+        assertEquals(p.canonical(), window(3, 3, "...", "O..", "...", "...", "...", "..X").canonical());
+        // different marks, a different cell or a different window
+        assertNotEquals(p.canonical(), window(0, 3, "O..", "...", "...", "...", "..X", "...").canonical());
+        assertNotEquals(p.canonical(), window(0, 3, "X..", "...", "...", "...", ".O.", "...").canonical());
+        assertNotEquals(p.canonical(), window(0, 3, "X..", "...", "...", "...", "..O", "...", "...").canonical());
+        ExtendablePosition start = ExtendablePosition.start();
+        assertEquals(start.next(new PlaceMove(1, 3, 3)).canonical(), start.next(new PlaceMove(1, 5, 5)).canonical());
+        assertNotEquals(start.next(new PlaceMove(1, 3, 3)).canonical(), start.next(new PlaceMove(1, 3, 4)).canonical());
+    }
+
+    @Test
+    public void testCanonicalKey() {
+        ExtendablePosition p = window(0, 3, "X..", "...", "...", "...", "..O", "...");
+        // the same symmetries and differences as for canonical
+        assertEquals(p.canonicalKey(), window(3, 0, ".....X", "......", ".O....").canonicalKey());
+        assertEquals(p.canonicalKey(), window(0, 4, "..X", "...", "...", "...", "O..", "...").canonicalKey());
+        assertEquals(p.canonicalKey(), window(2, 6, "...", "..O", "...", "...", "...", "X..").canonicalKey());
+        assertEquals(p.canonicalKey(), window(3, 3, "...", "O..", "...", "...", "...", "..X").canonicalKey());
+        assertEquals(p.canonicalKey().hashCode(), window(3, 3, "...", "O..", "...", "...", "...", "..X").canonicalKey().hashCode());
+        assertNotEquals(p.canonicalKey(), window(0, 3, "O..", "...", "...", "...", "..X", "...").canonicalKey());
+        assertNotEquals(p.canonicalKey(), window(0, 3, "X..", "...", "...", "...", ".O.", "...").canonicalKey());
+        assertNotEquals(p.canonicalKey(), window(0, 3, "X..", "...", "...", "...", "..O", "...", "...").canonicalKey());
+        // a window which differs from another only in its shape
+        assertNotEquals(window(0, 0, "X..", "...", "...").canonicalKey(), window(0, 0, "X..", "...", "...", "...").canonicalKey());
+        // across the states reached by random games, keys are equal exactly when the (hashed) canonical keys are
+        Random random = new Random(0L);
+        List<ExtendablePosition> positions = new ArrayList<>();
+        for (int game = 0; game < 20; game++) {
+            ExtendablePosition q = ExtendablePosition.start();
+            for (int player = 1; !q.isTerminal(); player = 1 - player) {
+                positions.add(q);
+                List<ExtendableMove> moves = q.moves(player);
+                if (moves.isEmpty()) break;
+                q = q.next(moves.get(random.nextInt(moves.size())));
+            }
+        }
+        long[] hashes = new long[positions.size()];
+        ExtendablePosition.CanonicalKey[] keys = new ExtendablePosition.CanonicalKey[positions.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = positions.get(i).canonical();
+            keys[i] = positions.get(i).canonicalKey();
+        }
+        for (int i = 0; i < hashes.length; i++)
+            for (int j = 0; j < hashes.length; j++)
+                assertEquals(hashes[i] == hashes[j], keys[i].equals(keys[j]));
+    }
+
+    /** a window with its top left corner at (rowMin,colMin), holding the given rows of 'X', 'O' and '.' */
+    private static ExtendablePosition window(int rowMin, int colMin, String... rows) {
+        Cell[][] g = new Cell[9][9];
+        for (Cell[] row : g) java.util.Arrays.fill(row, Cell.ZOMBIE);
+        for (int r = 0; r < rows.length; r++)
+            for (int c = 0; c < rows[r].length(); c++) {
+                char ch = rows[r].charAt(c);
+                g[rowMin + r][colMin + c] = ch == 'X' ? Cell.X : ch == 'O' ? Cell.O : Cell.EMPTY;
+            }
+        return new ExtendablePosition(g, 1, 2, rowMin, rowMin + rows.length, colMin, colMin + rows[0].length());
+    }
+
     @Test
     public void testDrawCondition() {
     	// fill a 9×9 window completely with alternating X and O 
@@ -4,6 +4,7 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.StateCodec;
 import java.util.Collection;
 
 public class ExtendableTicTacToeTest {
@@ -28,5 +29,36 @@ public class ExtendableTicTacToeTest {
         assertNotNull(s1);
         assertNotSame(s0, s1);//should return a new state
     }
-}
 
+    @Test
+    public void testCodec() {
+        ExtendableTicTacToe game = new ExtendableTicTacToe();
+        StateCodec<ExtendableTicTacToe> codec = game.codec();
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(codec.bytes() + 3);
+        java.util.Random random = new java.util.Random(0L);
+        State<ExtendableTicTacToe> state = game.start();
+        while (!state.isTerminal()) {
+            codec.write(state, buffer, 3);
+            assertEquals(state, codec.read(buffer, 3));
+            java.util.List<Move<ExtendableTicTacToe>> moves = new java.util.ArrayList<>(state.moves(state.player()));
+            state = state.next(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void testMoveCodes() {
+        java.util.Random random = new java.util.Random(0L);
+        State<ExtendableTicTacToe> state = new ExtendableTicTacToe().start();
+        int[] codes = new int[89];
+        while (!state.isTerminal()) {
+            int player = state.player();
+            int n = state.generateMoves(player, codes);
+            assertEquals(state.moves(player).size(), n);
+            int k = 0;
+            // same order as moves, and the same States
+            for (Move<ExtendableTicTacToe> move : state.moves(player)) assertEquals(state.next(move), state.nextByCode(codes[k++]));
+            assertEquals(n, state.generateMoves(player, new int[2]));
+            state = state.nextByCode(codes[random.nextInt(n)]);
+        }
+    }
+}
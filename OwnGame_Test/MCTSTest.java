@@ -1,8 +1,12 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame;
 
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ExpansionPolicy;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchStats;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.TranspositionTable;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.UCB1;
 
 
 
@@ -42,11 +46,13 @@ public class MCTSTest {
             .next(new PlaceMove(1,3,3))
             .next(new PlaceMove(0,4,4))
             .next(new PlaceMove(1,3,4));
+        ExtendableBoard board = new ExtendableBoard();
+        board.load(p0);
         Method m = MCTS.class.getDeclaredMethod(
-            "twoInARowThreatCheck", ExtendablePosition.class, int.class);
+            "twoInARowThreatCheck", ExtendableBoard.class, int.class);
         m.setAccessible(true);
-        assertTrue((boolean)m.invoke(ai, p0, 1));
-        assertFalse((boolean)m.invoke(ai, p0, 0));
+        assertTrue((boolean)m.invoke(ai, board, 1));
+        assertFalse((boolean)m.invoke(ai, board, 0));
     }
 
     @Test
@@ -96,18 +102,14 @@ public class MCTSTest {
         Node<ExtendableTicTacToe> b = new NodeStub( 5,  5); // winRate=1.0
         double logN = Math.log(25);
 
-        Method ucb1 = MCTS.class.getDeclaredMethod("ucb1", Node.class, double.class);
-        ucb1.setAccessible(true);
-        double uA = (double)ucb1.invoke(ai, a, logN);
-        double uB = (double)ucb1.invoke(ai, b, logN);
+        UCB1<ExtendableTicTacToe> ucb1 = new UCB1<>();
+        double uA = ucb1.value(a, logN);
+        double uB = ucb1.value(b, logN);
         assertTrue(uB > uA);
 
         // test select
         ParentStub parent = new ParentStub(Arrays.asList(a, b));
-        Method select = MCTS.class.getDeclaredMethod("select", Node.class);
-        select.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        Node<ExtendableTicTacToe> chosen = (Node<ExtendableTicTacToe>)select.invoke(ai, parent);
+        Node<ExtendableTicTacToe> chosen = ucb1.select(parent);
         assertSame(b, chosen);
     }
 
@@ -117,13 +119,14 @@ public class MCTSTest {
         ai = new MCTS(root, /*isHumanFirst=*/true);
         // mctsPlayer == opener
         aiPlayer = root.state().game().opener();
-        Method expand = MCTS.class.getDeclaredMethod("expand", Node.class);
-        expand.setAccessible(true);
+        ExpansionPolicy<ExtendableTicTacToe> expand =
+            ExpansionPolicy.distinct(s -> ((ExtendableTicTacToe.EState) s).getPosition().canonicalKey());
+        TranspositionTable<ExtendableTicTacToe> expanded = new TranspositionTable<>(ETTTNode::new);
         // first expansion
-        expand.invoke(ai, root);
+        expand.expand(root, expanded);
         int c1 = root.children().size();
         // second expansion should add none
-        expand.invoke(ai, root);
+        expand.expand(root, expanded);
         assertEquals(c1, root.children().size());
     }
 
@@ -144,9 +147,11 @@ public class MCTSTest {
         ExtendablePosition p = new ExtendablePosition(g,0,0,3,6,3,6);
         ExtendableTicTacToe.EState st = new ExtendableTicTacToe().new EState(p);
 
-        Method rollout = MCTS.class.getDeclaredMethod("rollout", State.class);
+        Method rollout = MCTS.class.getDeclaredMethod("rollout", State.class, Random.class);
         rollout.setAccessible(true);
-        int sc = (int)rollout.invoke(ai, st);
+        Method score = MCTS.class.getDeclaredMethod("score", State.class, State.class);
+        score.setAccessible(true);
+        int sc = (int)score.invoke(ai, st, rollout.invoke(ai, st, new Random(0L)));
         assertTrue(sc >= 100);// ≥100 bonus
     }
 
@@ -161,6 +166,58 @@ public class MCTSTest {
         assertTrue(root.children().contains(best));
     }
 
+    /**
+     * Every move of whole games between two engines, each keeping its tree (reroot) from move to move,
+     * must be a legal successor of the position it was made from, although symmetric positions share their nodes.
+     */
+    @Test
+    public void testSelfPlayMovesAreLegal() {
+        for (long seed = 0; seed < 4; seed++) {
+            State<ExtendableTicTacToe> state = new ExtendableTicTacToe().start();
+            MCTS[] engines = new MCTS[2];
+            while (!state.isTerminal()) {
+                int player = state.player();
+                if (engines[player] == null) engines[player] = new MCTS(new ETTTNode(state), player, player != state.game().opener(), seed);
+                else engines[player].reroot(state);
+                State<ExtendableTicTacToe> next = engines[player].run(300).state();
+                assertTrue("illegal move from " + state + " to " + next, state.successors().contains(next));
+                state = next;
+            }
+        }
+    }
+
+    /**
+     * The rollouts of an instrumented search record their parts; those of a search which is not instrumented record nothing.
+     */
+    @Test
+    public void testRolloutParts() {
+        MCTS mcts = new MCTS(new ETTTNode(new ExtendableTicTacToe().start()), true, 0L);
+        mcts.search().instrument(true);
+        mcts.run(500);
+        SearchStats stats = mcts.search().stats();
+        long parts = 0;
+        for (String part : List.of("canonical", "look-ahead", "threats")) {
+            assertTrue(part, stats.calls(part) > 0);
+            parts += stats.nanos(part);
+        }
+        assertTrue(parts <= stats.nanos(SearchStats.Phase.ROLLOUT));
+        assertEquals(0, stats.calls("winner"));
+        mcts.search().instrument(false);
+        mcts.run(10);
+        assertNull(mcts.search().stats());
+    }
+
+    /**
+     * A Node which does not override increment cannot be updated by a search (rather than being silently recalculated).
+     */
+    @Test
+    public void testIncrementIsOptional() {
+        Node<ExtendableTicTacToe> node = new NodeStub(3, 4);
+        assertThrows(RuntimeException.class, () -> node.increment(2));
+        assertThrows(RuntimeException.class, () -> node.increment(2, 1));
+        assertEquals(3, node.wins());
+    }
+
     //
     //helpers
     //
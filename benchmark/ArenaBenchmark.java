@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.*;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ETTTNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark to compare, for both games, a search whose Nodes are separate objects (TicTacToeNode, ETTTNode)
+ * with the same search whose Nodes are held in a NodeArena or in an OffHeapNodeStore
+ * (each of which is reset, rather than rebuilt, for each search).
+ * <p>
+ * For each kind of Node it reports the iterations per second, the bytes allocated per iteration,
+ * the number and duration of garbage collections during the search,
+ * the heap retained by the finished tree per node: first for the nodes themselves and then for their States
+ * (which only the off-heap store does not keep on the heap), and the off-heap memory per node.
+ * All searches use the same (uniformly random) rollouts and no transpositions, so that only the Nodes differ.
+ * <p>
+ * NOTE: the JIT compiles the search for the kinds of Node it has seen so far, so whichever kind is measured second
+ * is handicapped. To compare iterations per second, measure each kind in its own JVM (see main).
+ */
+public class ArenaBenchmark {
+
+    /**
+     * Main program.
+     *
+     * @param args optionally, the number of iterations per search (default 50000)
+     *             and the one kind of Node to measure ("objects", "arena" or "off-heap"; default all).
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        String kind = args.length > 1 ? args[1] : null;
+        System.out.println("ArenaBenchmark: " + iterations + " iterations per search");
+        TicTacToe ticTacToe = new TicTacToe();
+        benchmark("TicTacToe", iterations, kind, ticTacToe::start, TicTacToeNode::new, ticTacToe.codec());
+        ExtendableTicTacToe extendable = new ExtendableTicTacToe();
+        benchmark("ExtendableTicTacToe", iterations / 10, kind, extendable::start, ETTTNode::new, extendable.codec());
+    }
+
+    /**
+     * Method to measure one game with each kind of Node.
+     *
+     * @param name       the name of the game.
+     * @param iterations the number of iterations per search.
+     * @param kind       the kind of Node to be measured, or null for both.
+     * @param start      a supplier of the start State.
+     * @param objects    the factory for Nodes which are separate objects.
+     * @param codec      the StateCodec for the off-heap store.
+     */
+    private static <G extends Game> void benchmark(String name, int iterations, String kind, Supplier<State<G>> start, Function<State<G>, Node<G>> objects, StateCodec<G> codec) {
+        System.out.println(name + ":");
+        List<NodeArena<G>> arena = new ArrayList<>(List.of(new NodeArena<>()));  // emptied to release the arena
+        OffHeapNodeStore<G> store = new OffHeapNodeStore<>(codec);
+        Map<String, Supplier<Function<State<G>, Node<G>>>> kinds = new LinkedHashMap<>();
+        kinds.put("objects", () -> objects);
+        kinds.put("arena", () -> {
+            arena.get(0).reset();
+            return arena.get(0)::node;
+        });
+        kinds.put("off-heap", () -> {
+            store.reset();
+            return store::node;
+        });
+        for (Map.Entry<String, Supplier<Function<State<G>, Node<G>>>> entry : kinds.entrySet()) {
+            if (kind != null && !kind.equals(entry.getKey())) continue;
+            for (int i = 0; i < 3; i++) search(start, entry.getValue().get()).run(iterations); // warm up
+            long collections = collections(), pause = collectionMillis();
+            long allocated = allocatedBytes();
+            long begin = System.nanoTime();
+            MonteCarloTreeSearch<G> search = search(start, entry.getValue().get());
+            search.run(iterations);
+            double seconds = (System.nanoTime() - begin) / 1E9;
+            allocated = allocatedBytes() - allocated;
+            collections = collections() - collections;
+            pause = collectionMillis() - pause;
+            List<State<G>> states = states(search.root());
+            int count = states.size();
+            // the heap retained by the nodes (or States) is what is released when the tree (or whole arena) is dropped
+            long retained = usedHeap();
+            search = null;
+            if (entry.getKey().equals("arena")) arena.clear();
+            long withoutNodes = usedHeap();
+            states = null;
+            long withoutStates = usedHeap();
+            long offHeap = entry.getKey().equals("off-heap") ? store.bytes() : 0;
+            System.out.printf("  %-8s %9d nodes %10.0f iterations/sec %8.0f bytes allocated/iteration %4d GCs (%4d ms) %6.0f + %4.0f bytes retained/node (+State) %4.0f bytes off-heap/node%n",
+                    entry.getKey(), count, iterations / seconds, (double) allocated / iterations, collections, pause,
+                    (double) (retained - withoutNodes) / count, (double) (withoutNodes - withoutStates) / count, (double) offHeap / count);
+        }
+    }
+
+    /**
+     * Method to create a search with uniformly random rollouts, scored from the point of view of the opener.
+     */
+    private static <G extends Game> MonteCarloTreeSearch<G> search(Supplier<State<G>> start, Function<State<G>, Node<G>> nodes) {
+        return new MonteCarloTreeSearch<>(nodes.apply(start.get()), nodes, new UCB1<>(),
+                ExpansionPolicy.unshared(),
+                (state, random) -> {
+                    while (!state.isTerminal()) {
+                        List<Move<G>> moves = new ArrayList<>(state.moves(state.player()));
+                        state = state.next(moves.get(random.nextInt(moves.size())));
+                    }
+                    return state;
+                },
+                (from, to) -> to.winner().map(w -> w == from.game().opener() ? 2 : 0).orElse(1),
+                new Random(0L));
+    }
+
+    /**
+     * Method to yield the States of the nodes reachable from root (one per node).
+     */
+    private static <G extends Game> List<State<G>> states(Node<G> root) {
+        List<State<G>> result = new ArrayList<>();
+        Deque<Node<G>> stack = new ArrayDeque<>(List.of(root));
+        while (!stack.isEmpty()) {
+            Node<G> node = stack.pop();
+            result.add(node.state());
+            stack.addAll(node.children());
+        }
+        return result;
+    }
+
+    /**
+     * @return the heap in use after a full garbage collection.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long collections() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) result += gc.getCollectionCount();
+        return result;
+    }
+
+    private static long collectionMillis() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) result += gc.getCollectionTime();
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.*;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ETTTNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark to compare, for both games, expanding a Node with all its children at once (ExpansionPolicy.distinct)
+ * with expanding it one child at a time (ExpansionPolicy.lazy).
+ * <p>
+ * For each kind of expansion it reports the iterations per second, the bytes allocated per iteration,
+ * the number of nodes and the heap retained by the finished tree (with its transposition table).
+ * Both use the same (uniformly random) rollouts, so that only the expansion differs.
+ * <p>
+ * NOTE: as for ArenaBenchmark, measure each kind in its own JVM to compare iterations per second (see main).
+ */
+public class ExpansionBenchmark {
+
+    /**
+     * Main program.
+     *
+     * @param args optionally, the number of iterations per search (default 50000)
+     *             and the one kind of expansion to measure ("eager" or "lazy"; default both).
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        String kind = args.length > 1 ? args[1] : null;
+        System.out.println("ExpansionBenchmark: " + iterations + " iterations per search");
+        benchmark("TicTacToe", iterations, kind, () -> new TicTacToe().start(), TicTacToeNode::new);
+        benchmark("ExtendableTicTacToe", iterations / 10, kind, () -> new ExtendableTicTacToe().start(), ETTTNode::new);
+    }
+
+    /**
+     * Method to measure one game with each kind of expansion.
+     *
+     * @param name       the name of the game.
+     * @param iterations the number of iterations per search.
+     * @param kind       the kind of expansion to be measured, or null for both.
+     * @param start      a supplier of the start State.
+     * @param nodes      the Node factory.
+     */
+    private static <G extends Game> void benchmark(String name, int iterations, String kind, Supplier<State<G>> start, Function<State<G>, Node<G>> nodes) {
+        System.out.println(name + ":");
+        Map<String, ExpansionPolicy<G>> policies = new LinkedHashMap<>();
+        policies.put("eager", ExpansionPolicy.distinct(s -> s));
+        policies.put("lazy", ExpansionPolicy.lazy(s -> s));
+        for (Map.Entry<String, ExpansionPolicy<G>> entry : policies.entrySet()) {
+            if (kind != null && !kind.equals(entry.getKey())) continue;
+            for (int i = 0; i < 3; i++) search(start, nodes, entry.getValue()).run(iterations); // warm up
+            long allocated = allocatedBytes();
+            long begin = System.nanoTime();
+            MonteCarloTreeSearch<G> search = search(start, nodes, entry.getValue());
+            search.run(iterations);
+            double seconds = (System.nanoTime() - begin) / 1E9;
+            allocated = allocatedBytes() - allocated;
+            int count = search.transpositions().size();
+            // the heap retained by the tree is what is released when the search is dropped
+            long retained = usedHeap();
+            search = null;
+            retained -= usedHeap();
+            System.out.printf("  %-6s %9d nodes %10.0f iterations/sec %8.0f bytes allocated/iteration %10d bytes retained (%4.0f/node)%n",
+                    entry.getKey(), count, iterations / seconds, (double) allocated / iterations, retained, (double) retained / count);
+        }
+    }
+
+    /**
+     * Method to create a search with uniformly random rollouts, scored from the point of view of the opener.
+     */
+    private static <G extends Game> MonteCarloTreeSearch<G> search(Supplier<State<G>> start, Function<State<G>, Node<G>> nodes, ExpansionPolicy<G> expansion) {
+        return new MonteCarloTreeSearch<>(nodes.apply(start.get()), nodes, new UCB1<>(), expansion,
+                (state, random) -> {
+                    int[] codes = new int[16];
+                    while (!state.isTerminal()) {
+                        int n = state.generateMoves(state.player(), codes);
+                        if (n > codes.length) n = state.generateMoves(state.player(), codes = new int[n]);
+                        state = state.nextByCode(codes[random.nextInt(n)]);
+                    }
+                    return state;
+                },
+                (from, to) -> to.winner().map(w -> w == from.game().opener() ? 2 : 0).orElse(1),
+                new Random(0L));
+    }
+
+    /**
+     * @return the heap in use after a full garbage collection.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.FastRandom;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ETTTNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableMove;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendablePosition;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.MCTS;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the hot paths of Extended TicTacToe: the ExtendablePosition methods used by the search
+ * (canonical is its normalization for symmetry), one rollout of MCTS, and a whole MCTS.run (scored in iterations per second).
+ * Run main (which adds the GC profiler) for the operations per second and, as gc.alloc.rate.norm,
+ * the bytes allocated per operation of each: record them as the baseline for later changes.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtendableBenchmark {
+    static final int ITERATIONS = 1000;
+    private static final int SAMPLES = 1024;    // a power of 2
+    private static final long SEED = 0L;
+
+    // non-terminal positions from random games, each with the player to move and a random move of theirs
+    private final List<State<ExtendableTicTacToe>> states = new ArrayList<>(SAMPLES);
+    private final ExtendablePosition[] positions = new ExtendablePosition[SAMPLES];
+    private final int[] players = new int[SAMPLES];
+    private final ExtendableMove[] moves = new ExtendableMove[SAMPLES];
+    private MCTS mcts;
+    private FastRandom random;
+    private int index;
+
+    /** optionally, args[0] is a regular expression for the benchmarks to run (default all those of this class) */
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ExtendableBenchmark.class.getSimpleName();
+        new Runner(new OptionsBuilder().include(include).addProfiler(GCProfiler.class).build()).run();
+    }
+
+    @Setup
+    public void setup() {
+        ExtendableTicTacToe game = new ExtendableTicTacToe();
+        FastRandom random = new FastRandom(SEED);
+        while (states.size() < SAMPLES) {
+            State<ExtendableTicTacToe> state = game.start();
+            for (int depth = random.nextInt(30); depth > 0 && !state.isTerminal(); depth--)
+                state = state.next(randomMove(state, random));
+            if (state.isTerminal()) continue;
+            int i = states.size();
+            positions[i] = ((ExtendableTicTacToe.EState) state).getPosition();
+            players[i] = state.player();
+            moves[i] = randomMove(state, random);
+            states.add(state);
+        }
+        mcts = new MCTS(new ETTTNode(game.start()), true, SEED);
+        this.random = new FastRandom(SEED);
+    }
+
+    @Benchmark
+    public ExtendablePosition positionNext() {
+        return positions[next()].next(moves[index]);
+    }
+
+    @Benchmark
+    public Optional<Integer> positionWinner() {
+        return positions[next()].winner();
+    }
+
+    @Benchmark
+    public boolean positionIsTerminal() {
+        return positions[next()].isTerminal();
+    }
+
+    @Benchmark
+    public long positionCanonical() {
+        return positions[next()].canonical();
+    }
+
+    @Benchmark
+    public List<ExtendableMove> positionMoves() {
+        return positions[next()].moves(players[index]);
+    }
+
+    @Benchmark
+    public State<ExtendableTicTacToe> rollout() {
+        return mcts.rollout(states.get(next()), random);
+    }
+
+    /** a search of ITERATIONS iterations from the start, always with the same seed (and so the same tree) */
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS)
+    public Node<ExtendableTicTacToe> run() {
+        return new MCTS(new ETTTNode(new ExtendableTicTacToe().start()), true, SEED).run(ITERATIONS);
+    }
+
+    private int next() {
+        return index = index + 1 & SAMPLES - 1;
+    }
+
+    private static ExtendableMove randomMove(State<ExtendableTicTacToe> state, FastRandom random) {
+        List<ExtendableMove> moves = ((ExtendableTicTacToe.EState) state).getPosition().moves(state.player());
+        return moves.get(random.nextInt(moves.size()));
+    }
+}
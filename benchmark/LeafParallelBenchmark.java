@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Game;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.MonteCarloTreeSearch;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ETTTNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+
+import java.util.function.Supplier;
+
+/**
+ * Benchmark to compare the playouts per second of leaf-parallel search (runLeafParallel)
+ * with those of the sequential search (run), for both games.
+ */
+public class LeafParallelBenchmark {
+
+    /**
+     * Main program.
+     *
+     * @param args optionally, the number of playouts per measurement (default 20000).
+     */
+    public static void main(String[] args) {
+        int playouts = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("LeafParallelBenchmark: " + playouts + " playouts per measurement, " + processors + " processors");
+        benchmark("TicTacToe", playouts, processors,
+                () -> new com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.MCTS(new TicTacToeNode(new TicTacToe().start()), false).search());
+        benchmark("ExtendableTicTacToe", playouts / 10, processors,
+                () -> new com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.MCTS(new ETTTNode(new ExtendableTicTacToe().start()), false).search());
+    }
+
+    /**
+     * Method to measure one game with batch sizes 1 (sequential), 2, 4, ... up to twice the number of processors.
+     *
+     * @param name       the name of the game.
+     * @param playouts   the number of playouts per measurement.
+     * @param processors the number of processors.
+     * @param searches   a supplier of fresh searches.
+     */
+    private static <G extends Game> void benchmark(String name, int playouts, int processors, Supplier<MonteCarloTreeSearch<G>> searches) {
+        searches.get().run(playouts); // warm up
+        System.out.println(name + ":");
+        for (int batch = 1; batch <= 2 * processors; batch *= 2) {
+            MonteCarloTreeSearch<G> search = searches.get();
+            int iterations = playouts / batch;
+            long start = System.nanoTime();
+            if (batch == 1) search.run(iterations);
+            else search.runLeafParallel(iterations, batch);
+            double seconds = (System.nanoTime() - start) / 1E9;
+            System.out.printf("  %-12s %10.0f playouts/sec%n", batch == 1 ? "sequential" : "batch " + batch, iterations * batch / seconds);
+        }
+    }
+}
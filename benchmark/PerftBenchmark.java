@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Game;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Perft;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark (and check) of the move generation and state transitions of both games, using Perft:
+ * for each depth up to the maximum, it reports the counts of the walk from the start and its nodes per second,
+ * both sequentially and (if there is more than one thread) in parallel.
+ * Any faster implementation of a game must give the same counts.
+ */
+public class PerftBenchmark {
+
+    /**
+     * Main program.
+     *
+     * @param args optionally, the maximum depth for ExtendableTicTacToe (default 4; TicTacToe is always walked to 9)
+     *             and the number of threads for the parallel walk (default the number of processors).
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        System.out.println("PerftBenchmark: " + threads + " threads for the parallel walk");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            benchmark("TicTacToe", new TicTacToe().start(), 9, threads > 1 ? pool : null);
+            benchmark("ExtendableTicTacToe", new ExtendableTicTacToe().start(), depth, threads > 1 ? pool : null);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Method to walk one game to each depth up to maxDepth.
+     *
+     * @param name     the name of the game.
+     * @param start    the start State.
+     * @param maxDepth the maximum depth.
+     * @param pool     the pool for the parallel walk, or null for none.
+     */
+    private static <G extends Game> void benchmark(String name, State<G> start, int maxDepth, ForkJoinPool pool) {
+        System.out.println(name + ":");
+        Perft.count(start, Math.min(maxDepth, 3)); // warm up
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long begin = System.nanoTime();
+            Perft.Count count = Perft.count(start, depth);
+            double seconds = (System.nanoTime() - begin) / 1E9;
+            String parallel = "";
+            if (pool != null) {
+                begin = System.nanoTime();
+                Perft.Count check = Perft.count(start, depth, pool);
+                double parallelSeconds = (System.nanoTime() - begin) / 1E9;
+                if (!check.equals(count)) throw new RuntimeException("PerftBenchmark: parallel walk differs: " + check);
+                parallel = String.format(" %12.0f nodes/sec (parallel)", count.nodes() / parallelSeconds);
+            }
+            System.out.printf("  %2d %14d leaves %12d wins %12d draws %14d nodes %12.0f nodes/sec%s%n",
+                    depth, count.leaves(), count.wins(), count.draws(), count.nodes(), count.nodes() / seconds, parallel);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Game;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.MonteCarloTreeSearch;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchStats;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.MCTS;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ETTTNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+
+import java.util.function.Supplier;
+
+/**
+ * Profile of the phases of a search by the MCTS engine of each game (see SearchStats):
+ * for each phase, the number of calls, the time spent and its share of the whole,
+ * with the average length of the rollouts and the average number of children added by an expansion,
+ * and the parts of the rollouts which the engine records (for ExtendableTicTacToe: canonical, look-ahead and threats).
+ * <p>
+ * It also reports the iterations per second of the same search with and without instrumentation,
+ * i.e. the cost of the timers (which is nothing when instrumentation is off).
+ */
+public class PhaseBenchmark {
+
+    /**
+     * Main program.
+     *
+     * @param args optionally, the number of iterations per search of TicTacToe (default 5000, before the tree is solved)
+     *             and of ExtendableTicTacToe (default 20000).
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int extendable = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        System.out.println("PhaseBenchmark: " + iterations + " iterations per search of TicTacToe, " + extendable + " of ExtendableTicTacToe");
+        benchmark("TicTacToe", iterations, () -> new MCTS(new TicTacToeNode(new TicTacToe().start()), 1, false, 0L).search());
+        benchmark("ExtendableTicTacToe", extendable, () -> new com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.MCTS(new ETTTNode(new ExtendableTicTacToe().start()), 1, false, 0L).search());
+    }
+
+    /**
+     * Method to profile one game.
+     *
+     * @param name       the name of the game.
+     * @param iterations the number of iterations per search.
+     * @param searches   a supplier of a new search (with the same seed each time).
+     */
+    private static <G extends Game> void benchmark(String name, int iterations, Supplier<MonteCarloTreeSearch<G>> searches) {
+        System.out.println(name + ":");
+        for (int i = 0; i < 10; i++) searches.get().run(iterations); // warm up
+        double plain = rate(searches.get(), iterations, false);
+        double instrumented = rate(searches.get(), iterations, true);
+        System.out.printf("  %.0f iterations/sec, %.0f iterations/sec instrumented%n", plain, instrumented);
+        MonteCarloTreeSearch<G> search = searches.get();
+        search.instrument(true);
+        search.run(iterations);
+        SearchStats stats = search.stats();
+        System.out.println("  " + stats.toString().replace("\n", "\n  "));
+    }
+
+    /**
+     * @return the iterations per second of one run of search.
+     */
+    private static double rate(MonteCarloTreeSearch<?> search, int iterations, boolean instrumented) {
+        search.instrument(instrumented);
+        long begin = System.nanoTime();
+        search.run(iterations);
+        return iterations / ((System.nanoTime() - begin) / 1E9);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Game;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Sprt;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Tournament;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.MCTS;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ETTTNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+
+import java.util.Optional;
+
+/**
+ * Headless self-play of the MCTS engine of each game against itself with a different number of iterations per move
+ * (see Tournament): for each game it reports the games per second, the average decision latency of each variant,
+ * and the win, draw and loss rates (and score and Elo difference) of A, with their 95% confidence intervals.
+ * <p>
+ * Each engine keeps its tree from one move to the next (see MCTS.reroot) and searches on one thread,
+ * so that each game is reproducible and the games are played in parallel.
+ * <p>
+ * Given two Elo differences, the match is instead a sequential probability ratio test (see Sprt) of whether A is
+ * elo0 or elo1 stronger than B: it stops as soon as that is decided (or after the given number of games),
+ * and the LLR is printed as it goes.
+ */
+public class SelfPlayBenchmark {
+
+    /**
+     * Main program.
+     *
+     * @param args optionally, the number of games (default 200), the number of threads (default the number of processors),
+     *             the iterations per move of A (default 1000) and of B (default 200),
+     *             and, for a sequential test, elo0 and elo1 (the number of games is then the maximum).
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int iterationsA = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int iterationsB = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        Sprt sprt = args.length > 5 ? new Sprt(Double.parseDouble(args[4]), Double.parseDouble(args[5])) : null;
+        System.out.println("SelfPlayBenchmark: " + games + " games on " + threads + " threads; A: " + iterationsA + " iterations/move, B: " + iterationsB + " iterations/move" + (sprt != null ? "; " + sprt : ""));
+        play("TicTacToe", new Tournament<>(() -> new TicTacToe().start(), ticTacToe(iterationsA), ticTacToe(iterationsB), 0L), games, threads, sprt);
+        play("ExtendableTicTacToe", new Tournament<>(() -> new ExtendableTicTacToe().start(), extendable(iterationsA), extendable(iterationsB), 0L), games, threads, sprt);
+    }
+
+    /**
+     * Method to play one match and print its Result (and, for a sequential test, its progress and decision).
+     */
+    private static <G extends Game> void play(String name, Tournament<G> tournament, int games, int threads, Sprt sprt) {
+        System.out.println(name + ":");
+        Tournament.Result result = tournament.play(games, threads, sprt, sprt == null ? null : progress -> {
+            int n = progress.games();
+            Optional<Sprt.Hypothesis> decision = sprt.decide(progress);
+            if (n % 10 == 0 || decision.isPresent() || n == games)
+                System.out.printf("  %6d games: W %d D %d L %d LLR %6.3f [%.3f, %.3f]%s%n", n, progress.wins(), progress.draws(), progress.losses(),
+                        sprt.llr(progress), sprt.lower(), sprt.upper(), decision.map(h -> " accept " + h).orElse(""));
+        });
+        System.out.println("  " + result);
+    }
+
+    /**
+     * Method to yield the variant of the TicTacToe engine which runs the given number of iterations per move.
+     */
+    static Tournament.Variant<TicTacToe> ticTacToe(int iterations) {
+        return (player, first, seed) -> new Tournament.Engine<>() {
+            public State<TicTacToe> move(State<TicTacToe> state) {
+                if (mcts == null) mcts = new MCTS(new TicTacToeNode(state), player, !first, seed);
+                else mcts.reroot(state);
+                return mcts.run(iterations).state();
+            }
+
+            private MCTS mcts;
+        };
+    }
+
+    /**
+     * Method to yield the variant of the ExtendableTicTacToe engine which runs the given number of iterations per move.
+     */
+    static Tournament.Variant<ExtendableTicTacToe> extendable(int iterations) {
+        return (player, first, seed) -> new Tournament.Engine<>() {
+            public State<ExtendableTicTacToe> move(State<ExtendableTicTacToe> state) {
+                if (mcts == null) mcts = new com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.MCTS(new ETTTNode(state), player, !first, seed);
+                else mcts.reroot(state);
+                return mcts.run(iterations).state();
+            }
+
+            private com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.MCTS mcts;
+        };
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.FastRandom;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.MCTS;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.Position;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the hot paths of TicTacToe: the Position methods used by the search,
+ * one rollout of MCTS, and a whole MCTS.run (whose score is in iterations per second).
+ * <p>
+ * Run main (which adds the GC profiler) to get, for each benchmark, its operations per second and,
+ * as gc.alloc.rate.norm, the bytes it allocates per operation: record them as the baseline for later changes.
+ * The Position benchmarks cycle through the same positions (from random games) every time.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicTacToeBenchmark {
+
+    /**
+     * Main program.
+     *
+     * @param args optionally, a regular expression for the benchmarks to run (default all those of this class).
+     * @throws RunnerException if JMH fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : TicTacToeBenchmark.class.getSimpleName();
+        new Runner(new OptionsBuilder().include(include).addProfiler(GCProfiler.class).build()).run();
+    }
+
+    @Setup
+    public void setup() {
+        TicTacToe game = new TicTacToe(SEED);
+        FastRandom random = new FastRandom(SEED);
+        // each sample is a non-terminal position from a random game, with a random move from it
+        while (states.size() < SAMPLES) {
+            State<TicTacToe> state = game.start();
+            for (int depth = random.nextInt(8); depth > 0 && !state.isTerminal(); depth--) state = state.nextByCode(randomMove(state, random));
+            if (state.isTerminal()) continue;
+            moves[states.size()] = randomMove(state, random);
+            positions[states.size()] = ((TicTacToe.TicTacToeState) state).position();
+            states.add(state);
+        }
+        mcts = new MCTS(new TicTacToeNode(game.start()), true, SEED);
+        this.random = new FastRandom(SEED);
+    }
+
+    @Benchmark
+    public Position positionMove() {
+        int i = next();
+        return positions[i].move(moves[i] >> 8, (moves[i] & 0xFF) / 3, (moves[i] & 0xFF) % 3);
+    }
+
+    @Benchmark
+    public Optional<Integer> positionWinner() {
+        return positions[next()].winner();
+    }
+
+    @Benchmark
+    public Position positionNormalize() {
+        return positions[next()].normalize();
+    }
+
+    @Benchmark
+    public List<int[]> positionMoves() {
+        int i = next();
+        return positions[i].moves(moves[i] >> 8);
+    }
+
+    @Benchmark
+    public State<TicTacToe> rollout() {
+        return mcts.rollout(states.get(next()), random);
+    }
+
+    /**
+     * A search of ITERATIONS iterations from the start, always with the same seed (and so the same tree).
+     */
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS)
+    public Node<TicTacToe> run() {
+        return new MCTS(new TicTacToeNode(new TicTacToe(SEED).start()), true, SEED).run(ITERATIONS);
+    }
+
+    private int next() {
+        return index = index + 1 & SAMPLES - 1;
+    }
+
+    /**
+     * @return the code of a random move from state (see State.generateMoves).
+     */
+    private static int randomMove(State<TicTacToe> state, FastRandom random) {
+        int[] codes = new int[9];
+        return codes[random.nextInt(state.generateMoves(state.player(), codes))];
+    }
+
+    static final int ITERATIONS = 10000;
+    private static final int SAMPLES = 1024;    // a power of 2
+    private static final long SEED = 0L;
+
+    private final List<State<TicTacToe>> states = new ArrayList<>(SAMPLES);
+    private final Position[] positions = new Position[SAMPLES];
+    private final int[] moves = new int[SAMPLES];  // the code of a move from each position
+    private MCTS mcts;
+    private FastRandom random;
+    private int index;
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.benchmark;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.*;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ETTTNode;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark to compare, for both games, the number of nodes and the iterations per second of:
+ * a plain tree (every path has its own nodes);
+ * the original expansion, which drops any child whose position has been seen anywhere else in the tree;
+ * and the transposition table, which shares one node between all the paths to a position.
+ * <p>
+ * All three use the same (uniformly random) rollouts, so that only the shape of the tree differs.
+ */
+public class TranspositionBenchmark {
+
+    /**
+     * Main program.
+     *
+     * @param args optionally, the number of iterations per measurement (default 20000).
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        System.out.println("TranspositionBenchmark: " + iterations + " iterations per measurement");
+        benchmark("TicTacToe", iterations, () -> new TicTacToe().start(), TicTacToeNode::new);
+        benchmark("ExtendableTicTacToe", iterations / 10, () -> new ExtendableTicTacToe().start(), ETTTNode::new);
+    }
+
+    /**
+     * Method to measure one game with each of the three kinds of expansion.
+     *
+     * @param name       the name of the game.
+     * @param iterations the number of iterations per measurement.
+     * @param start      a supplier of the start State.
+     * @param nodes      the Node factory.
+     */
+    private static <G extends Game> void benchmark(String name, int iterations, Supplier<State<G>> start, Function<State<G>, Node<G>> nodes) {
+        Set<Object> seen = new HashSet<>();
+        Map<String, ExpansionPolicy<G>> policies = new LinkedHashMap<>();
+        policies.put("tree", (node, table) -> ExpansionPolicy.<G>distinct(s -> s).expand(node, new TranspositionTable<>(nodes)));
+        policies.put("drop", (node, table) -> {
+            State<G> state = node.state();
+            for (Move<G> move : state.moves(state.player())) {
+                State<G> next = state.next(move);
+                if (seen.add(next)) node.addChild(next);
+            }
+        });
+        policies.put("transposition", ExpansionPolicy.distinct(s -> s));
+        System.out.println(name + ":");
+        for (Map.Entry<String, ExpansionPolicy<G>> entry : policies.entrySet()) {
+            search(start, nodes, entry.getValue()).run(iterations); // warm up
+            seen.clear();
+            MonteCarloTreeSearch<G> search = search(start, nodes, entry.getValue());
+            long begin = System.nanoTime();
+            search.run(iterations);
+            double seconds = (System.nanoTime() - begin) / 1E9;
+            seen.clear();
+            System.out.printf("  %-14s %9d nodes %10.0f iterations/sec%n", entry.getKey(), count(search.root()), iterations / seconds);
+        }
+    }
+
+    /**
+     * Method to create a search with uniformly random rollouts, scored from the point of view of the opener.
+     */
+    private static <G extends Game> MonteCarloTreeSearch<G> search(Supplier<State<G>> start, Function<State<G>, Node<G>> nodes, ExpansionPolicy<G> expansion) {
+        return new MonteCarloTreeSearch<>(nodes.apply(start.get()), nodes, new UCB1<>(), expansion,
+                (state, random) -> {
+                    while (!state.isTerminal()) {
+                        List<Move<G>> moves = new ArrayList<>(state.moves(state.player()));
+                        state = state.next(moves.get(random.nextInt(moves.size())));
+                    }
+                    return state;
+                },
+                (from, to) -> to.winner().map(w -> w == from.game().opener() ? 2 : 0).orElse(1),
+                new Random(0L));
+    }
+
+    /**
+     * Method to count the distinct nodes reachable from root.
+     */
+    private static <G extends Game> int count(Node<G> root) {
+        Set<Node<G>> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node<G>> stack = new ArrayDeque<>(List.of(root));
+        while (!stack.isEmpty()) {
+            Node<G> node = stack.pop();
+            if (nodes.add(node)) stack.addAll(node.children());
+        }
+        return nodes.size();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Class to represent the children of a Node: a list to which elements are only ever appended (or all removed),
+ * which may be read by other threads while one thread appends to it (as in runTreeParallel).
+ * <p>
+ * Unlike a CopyOnWriteArrayList, which copies all its elements on every add (so that adding k children, one at a time,
+ * as ExpansionPolicy.lazy does, costs O(k^2)), an add only copies the elements when the array is full,
+ * so that adding k children costs O(k).
+ * A reader sees the elements which had been added when it last read the size,
+ * and never sees an element which is not yet in place: the element is written before the (volatile) size.
+ * <p>
+ * NOTE: only one thread at a time may add (the search holds the lock on the Node), and clear must not be called
+ * while other threads are reading (the search only prunes between iterations).
+ *
+ * @param <E> the type of the elements.
+ */
+public class ChildList<E> extends AbstractList<E> implements RandomAccess {
+
+    public E get(int index) {
+        int size = this.size;
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean add(E e) {
+        int size = this.size;
+        E[] elements = this.elements;
+        if (size == elements.length) this.elements = elements = Arrays.copyOf(elements, Math.max(4, 2 * size));
+        elements[size] = e;
+        this.size = size + 1;
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+        elements = empty();
+    }
+
+    /**
+     * Constructor.
+     */
+    public ChildList() {
+        elements = empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E[] empty() {
+        return (E[]) new Object[0];
+    }
+
+    // NOTE: size is read before elements, and written after it, so every element below size is in place.
+    private volatile E[] elements;
+    private volatile int size;
+}
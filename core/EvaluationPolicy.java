@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * This interface defines how the outcome of a rollout is scored before it is back-propagated.
+ *
+ * @param <G> the type of the Game.
+ */
+@FunctionalInterface
+public interface EvaluationPolicy<G extends Game> {
+
+    /**
+     * Method to score a rollout.
+     *
+     * @param start the State from which the rollout started.
+     * @param end   the State at which the rollout stopped.
+     * @return the score to be added to the wins of every Node on the path.
+     */
+    int evaluate(State<G> start, State<G> end);
+}
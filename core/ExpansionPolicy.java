@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * This interface defines the expansion phase of a Monte Carlo Tree Search:
+ * which children to add to a Node which has been reached for the first time.
+ *
+ * @param <G> the type of the Game.
+ */
+@FunctionalInterface
+public interface ExpansionPolicy<G extends Game> {
+
+    /**
+     * Method to add the children of node which are worth searching.
+     *
+     * @param node  the Node to be expanded.
+     * @param table the transposition table of the search, from which the children should be taken
+     *              so that transposed positions share their Node.
+     */
+    void expand(Node<G> node, TranspositionTable<G> table);
+
+    /**
+     * Method to yield an ExpansionPolicy which adds a new child (with addChild(State)) for every move, in the order of
+     * generateMoves, without the transposition table: so no Node is shared and transposed positions are searched separately.
+     * This is the policy for Nodes which cannot be shared, such as those of an OffHeapNodeStore.
+     *
+     * @param <G> the type of the Game.
+     * @return an ExpansionPolicy.
+     */
+    static <G extends Game> ExpansionPolicy<G> unshared() {
+        return (node, table) -> {
+            State<G> state = node.state();
+            int player = state.player();
+            int[] codes = new int[16];
+            int n = state.generateMoves(player, codes);
+            if (n > codes.length) state.generateMoves(player, codes = new int[n]);
+            for (int i = 0; i < n; i++) node.addChild(state.nextByCode(codes[i]));
+        };
+    }
+
+    /**
+     * Method to determine if expand would add children to node (which is not terminal),
+     * in which case the search expands it rather than selecting one of its children.
+     * By default, only a Node which has no children is expanded.
+     *
+     * @param node a Node.
+     * @return true if node is to be expanded.
+     */
+    default boolean expandable(Node<G> node) {
+        return node.children().isEmpty();
+    }
+
+    /**
+     * Method to yield an ExpansionPolicy which adds one child for every distinct key among the moves,
+     * taking that child from the transposition table (so that a position which has been reached by some other path
+     * is shared rather than searched again).
+     * Moves whose keys duplicate that of a child already added are skipped.
+     *
+     * @param key a function which yields the key of a State (typically its position, normalized for symmetry).
+     * @param <G> the type of the Game.
+     * @return an ExpansionPolicy.
+     */
+    static <G extends Game> ExpansionPolicy<G> distinct(Function<State<G>, Object> key) {
+        return (node, table) -> {
+            State<G> state = node.state();
+            Set<Node<G>> children = Collections.newSetFromMap(new IdentityHashMap<>());
+            children.addAll(node.children());
+            int player = state.player();
+            int[] codes = new int[16];
+            int n = state.generateMoves(player, codes);
+            if (n > codes.length) state.generateMoves(player, codes = new int[n]);
+            for (int i = 0; i < n; i++) {
+                State<G> next = state.nextByCode(codes[i]);
+                Node<G> child = table.get(key.apply(next), next);
+                if (children.add(child)) node.addChild(child);
+            }
+        };
+    }
+
+    /**
+     * Method to yield an ExpansionPolicy which adds the same children as distinct, but one at a time (as in textbook UCT):
+     * the Node keeps a MoveCursor on its untried moves, and each expansion adds children from it
+     * until it has added one which has never been visited (the one which the search will visit next).
+     * Children which have been visited already (through a transposition) or which are terminal are added on the way.
+     * So a Node whose children are mostly never visited holds the codes of its moves rather than its children,
+     * and a child's State is only created (and its key calculated) when the child is reached.
+     * <p>
+     * With UCB1, which visits unvisited children first, each iteration adds (at most) one Node, the one it visits last,
+     * so every Node in the tree has been visited; whereas with distinct, an iteration which reaches an unvisited child
+     * expands it too, adding all of its children, most of which are never visited.
+     * The cursor is dropped once it has no more moves.
+     * NOTE: the Nodes must support untried (NodeArena and OffHeapNodeStore do not: their children must be added together;
+     * for an OffHeapNodeStore, see unshared).
+     *
+     * @param key a function which yields the key of a State (typically its position, normalized for symmetry).
+     * @param <G> the type of the Game.
+     * @return an ExpansionPolicy.
+     */
+    static <G extends Game> ExpansionPolicy<G> lazy(Function<State<G>, Object> key) {
+        return new ExpansionPolicy<>() {
+            public void expand(Node<G> node, TranspositionTable<G> table) {
+                MoveCursor untried = node.untried();
+                if (untried == null) {
+                    if (!node.children().isEmpty()) return; // all the moves have been tried
+                    untried = MoveCursor.of(node.state());
+                    node.untried(untried);
+                }
+                State<G> state = node.state();
+                while (untried.hasNext()) {
+                    State<G> next = state.nextByCode(untried.next());
+                    Node<G> child = table.get(key.apply(next), next);
+                    if (!untried.add(child)) continue;  // a duplicate of a child already added
+                    node.addChild(child);
+                    if (child.playouts() == 0) break;
+                }
+                if (!untried.hasNext()) node.untried(null);
+            }
+
+            public boolean expandable(Node<G> node) {
+                return node.children().isEmpty() || node.untried() != null;
+            }
+        };
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class to represent a fast, non-thread-safe random source: the xoroshiro128++ generator,
+ * seeded through SplitMix64.
+ * <p>
+ * It extends Random so that it can be used wherever a Random is expected (State.random, RolloutPolicy, etc.),
+ * but, unlike Random, it does not update an AtomicLong (with a compare-and-set) for every number it yields.
+ * So each instance must only be used by one thread at a time:
+ * use current() for the instance which belongs to the current thread,
+ * or split() to give each worker of a search a generator of its own.
+ * <p>
+ * NOTE: the sequence for a given seed is not the same as that of Random.
+ */
+public class FastRandom extends Random {
+
+    /**
+     * @return the FastRandom which belongs to the current thread (created, with a unique seed, when first needed).
+     */
+    public static FastRandom current() {
+        return current.get();
+    }
+
+    /**
+     * Method to create a new, independent, generator seeded from this one (for example, for a worker thread).
+     *
+     * @return a new FastRandom.
+     */
+    public FastRandom split() {
+        return new FastRandom(nextLong());
+    }
+
+    /**
+     * Method to derive the seed of one of the streams of a seed (e.g. the stream of a thread or of an iteration),
+     * so that a single seed determines every random number of a parallel search, however its work is scheduled.
+     * Different streams of the same seed are (statistically) independent.
+     *
+     * @param seed   the seed from which the streams are derived.
+     * @param stream the number of the stream.
+     * @return the seed of the stream.
+     */
+    public static long seed(long seed, long stream) {
+        return mix(mix(seed) + GOLDEN_GAMMA * (stream + 1));
+    }
+
+    /**
+     * Method to reset this generator so that it yields the sequence determined by seed
+     * (including that of nextGaussian, whose second value Random caches: super.setSeed discards it).
+     *
+     * @param seed the seed.
+     */
+    public void setSeed(long seed) {
+        // NOTE: this is called by the constructor of Random.
+        super.setSeed(seed);
+        s0 = mix(seed += GOLDEN_GAMMA);
+        s1 = mix(seed + GOLDEN_GAMMA);
+    }
+
+    public long nextLong() {
+        long s0 = this.s0, s1 = this.s1;
+        long result = Long.rotateLeft(s0 + s1, 17) + s0;
+        s1 ^= s0;
+        this.s0 = Long.rotateLeft(s0, 49) ^ s1 ^ s1 << 21;
+        this.s1 = Long.rotateLeft(s1, 28);
+        return result;
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Method to yield a uniformly distributed int between 0 (inclusive) and bound (exclusive).
+     * The high 32 bits of a random number are multiplied by bound (Lemire's method), so there is no division
+     * except in the rare case in which the result would be biased.
+     *
+     * @param bound the bound (must be positive).
+     * @return an int in [0, bound).
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive: " + bound);
+        long product = (nextLong() >>> 32) * bound;
+        if ((product & 0xFFFFFFFFL) < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while ((product & 0xFFFFFFFFL) < threshold) product = (nextLong() >>> 32) * bound;
+        }
+        return (int) (product >>> 32);
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * Primary constructor.
+     *
+     * @param seed the seed: FastRandoms with the same seed yield the same sequence.
+     */
+    public FastRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Secondary constructor with a seed which is different for every FastRandom created by this JVM.
+     */
+    public FastRandom() {
+        this(mix(seeds.getAndAdd(GOLDEN_GAMMA)) ^ System.nanoTime());
+    }
+
+    protected int next(int bits) {
+        return (int) (nextLong() >>> 64 - bits);
+    }
+
+    /**
+     * The finalizer of SplitMix64, which maps each long to a well-mixed long.
+     */
+    private static long mix(long z) {
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        return z ^ z >>> 31;
+    }
+
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final AtomicLong seeds = new AtomicLong();
+    private static final ThreadLocal<FastRandom> current = ThreadLocal.withInitial(FastRandom::new);
+
+    // the state of the generator (which is never all zero, since mix is a bijection)
+    private long s0, s1;
+}
@@ -0,0 +1,775 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Class to represent a Monte Carlo Tree Search for any Game.
+ * <p>
+ * Each iteration (see simulate) has four phases:
+ * Selection -> Expansion -> Rollout -> Back propagation.
+ * All the game-specific behavior is supplied by the policies given to the constructor.
+ * Positions which are reached by more than one path share one Node (see TranspositionTable),
+ * so the "tree" is in fact a directed acyclic graph: each iteration updates the Nodes on the path it took.
+ * NOTE: the policies must be thread-safe if the search is run on more than one thread.
+ * <p>
+ * Given the same random source (e.g. the same seed), the same policies and the same arguments, every kind of run
+ * builds the same tree, except runTreeParallel (whose threads race through one tree) and the time-budgeted runs:
+ * each parallel run draws one seed from the random source and derives from it a stream (see FastRandom.seed)
+ * for each thread, or for each iteration.
+ * Use runBatched for a reproducible search of one tree by several threads.
+ * <p>
+ * A search may be given a NodeBudget, in which case it evicts its coldest subtrees whenever it grows beyond the budget,
+ * so that it can run indefinitely in bounded memory.
+ * <p>
+ * A search may also be instrumented, in which case each run records the counts and times of its phases (see SearchStats).
+ *
+ * @param <G> the type of the Game.
+ */
+public class MonteCarloTreeSearch<G extends Game> {
+
+    /**
+     * Run the given number of iterations and return the best child of the root.
+     *
+     * @param iterations the number of iterations.
+     * @return the best child of the root.
+     */
+    public Node<G> run(int iterations) {
+        SearchStats stats = instrumented ? new SearchStats() : null;
+        for (int i = 0; i < iterations; i++) simulate(root, random, false, 0, stats);
+        this.iterations = iterations;
+        this.stats = stats;
+        return bestChild(root);
+    }
+
+    /**
+     * Run as many iterations as fit into the given time budget (anytime search) and return the best child of the root.
+     * The number of iterations actually done is available from iterations().
+     *
+     * @param budget the time allowed for the search.
+     * @return the best child of the root found in the time allowed.
+     */
+    public Node<G> run(Duration budget) {
+        return run(Integer.MAX_VALUE, nanos(budget));
+    }
+
+    /**
+     * Run the given number of iterations, or as many as can be done before the deadline if that comes first,
+     * and return the best child of the root.
+     * The number of iterations actually done is available from iterations().
+     *
+     * @param iterations the maximum number of iterations.
+     * @param deadline   the time by which the search must stop.
+     * @return the best child of the root found before the deadline.
+     */
+    public Node<G> run(int iterations, Instant deadline) {
+        return run(iterations, nanos(Duration.between(Instant.now(), deadline)));
+    }
+
+    /**
+     * @return the number of iterations done by the most recent run.
+     */
+    public int iterations() {
+        return iterations;
+    }
+
+    /**
+     * Method to turn the instrumentation of this search on or off.
+     * When it is off (the default), the phases are not timed at all.
+     *
+     * @param instrumented true if each run is to record its SearchStats.
+     */
+    public void instrument(boolean instrumented) {
+        this.instrumented = instrumented;
+    }
+
+    /**
+     * @return the SearchStats of the most recent run (or null if it was not instrumented).
+     */
+    public SearchStats stats() {
+        return stats;
+    }
+
+    /**
+     * Run at most the given number of iterations within the given time.
+     * At least one iteration is always done, so that the root has a child to return.
+     * NOTE: the clock is read once per iteration, using System.nanoTime (monotonic and much cheaper than an iteration).
+     *
+     * @param iterations the maximum number of iterations.
+     * @param nanos      the time allowed, in nanoseconds.
+     * @return the best child of the root.
+     */
+    private Node<G> run(int iterations, long nanos) {
+        SearchStats stats = instrumented ? new SearchStats() : null;
+        long start = System.nanoTime();
+        int i = 0;
+        do simulate(root, random, false, 0, stats);
+        while (++i < iterations && System.nanoTime() - start < nanos);
+        this.iterations = i;
+        this.stats = stats;
+        return bestChild(root);
+    }
+
+    /**
+     * Method to convert a Duration to nanoseconds, saturating (rather than overflowing) for very long durations.
+     *
+     * @param duration a Duration (which may be negative).
+     * @return the number of nanoseconds.
+     */
+    private static long nanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return duration.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Run the given number of iterations, shared between independent search trees (root parallelization),
+     * and return the best child of the root.
+     * <p>
+     * Each thread searches its own tree, built from the same root State and starting with the same root children.
+     * When all threads are done, the statistics of the root children of every tree are merged into
+     * the children of this root, so that bestChild is chosen on the combined statistics.
+     * Deeper statistics are not merged and are discarded with the worker trees.
+     *
+     * @param iterations the total number of iterations.
+     * @param threads    the number of threads (and trees).
+     * @return the best child of the root.
+     */
+    public Node<G> run(int iterations, int threads) {
+        if (threads <= 1 || root.isLeaf()) return run(iterations);
+        // the workers start with all the children of the root (which the ExpansionPolicy may add one at a time)
+        for (int size = -1; expansion.expandable(root) && root.children().size() > size; ) {
+            size = root.children().size();
+            expansion.expand(root, table(root));
+        }
+        List<Node<G>> children = new ArrayList<>(root.children());
+        List<MonteCarloTreeSearch<G>> workers = new ArrayList<>();
+        List<Callable<Node<G>>> tasks = new ArrayList<>();
+        long seed = random.nextLong();
+        for (int t = 0; t < threads; t++) {
+            Node<G> workerRoot = nodes.apply(root.state());
+            for (Node<G> child : children) workerRoot.addChild(child.state());
+            MonteCarloTreeSearch<G> worker = new MonteCarloTreeSearch<>(workerRoot, nodes, selection, expansion, rollout, evaluation, new FastRandom(FastRandom.seed(seed, t)));
+            // the workers share the budget
+            if (budget != null) worker.budget(new NodeBudget(Math.max(2, budget.nodes() / threads)));
+            worker.instrument(instrumented);
+            int share = iterations / threads + (t < iterations % threads ? 1 : 0);
+            workers.add(worker);
+            tasks.add(() -> worker.run(share));
+        }
+
+        // NOTE: the initial statistics of (terminal) children are recorded so that only the search results are merged.
+        int[][] initial = new int[threads][];
+        for (int t = 0; t < threads; t++) initial[t] = statistics(workers.get(t).root);
+        invokeAll(tasks, threads);
+        for (int t = 0; t < threads; t++) merge(workers.get(t).root, initial[t], children);
+        this.iterations = iterations;
+        this.stats = instrumented ? new SearchStats() : null;
+        if (stats != null) for (MonteCarloTreeSearch<G> worker : workers) stats.add(worker.stats);
+        return bestChild(root);
+    }
+
+    /**
+     * Run the given number of iterations on several threads, all searching this one tree (tree parallelization),
+     * and return the best child of the root.
+     * <p>
+     * Node statistics must be updatable atomically (see Node.increment) and children must be safe to
+     * iterate while another thread is adding to them.
+     * A Node is only expanded by one thread at a time.
+     * Each Node on the path of an iteration carries a virtual loss while the iteration is in progress
+     * so that other threads tend to avoid that path.
+     *
+     * @param iterations  the total number of iterations.
+     * @param threads     the number of threads.
+     * @param virtualLoss the loss provisionally scored by each Node on the path of an unfinished iteration.
+     * @return the best child of the root.
+     */
+    public Node<G> runTreeParallel(int iterations, int threads, int virtualLoss) {
+        if (threads <= 1) return run(iterations);
+        AtomicInteger remaining = new AtomicInteger(iterations);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        List<SearchStats> workerStats = new ArrayList<>();
+        long seed = random.nextLong();
+        for (int t = 0; t < threads; t++) {
+            Random workerRandom = new FastRandom(FastRandom.seed(seed, t));
+            // NOTE: each thread records its own SearchStats (which are added together when they are done).
+            SearchStats threadStats = instrumented ? new SearchStats() : null;
+            if (threadStats != null) workerStats.add(threadStats);
+            tasks.add(() -> {
+                while (remaining.getAndDecrement() > 0) simulate(root, workerRandom, true, virtualLoss, threadStats);
+                return null;
+            });
+        }
+        invokeAll(tasks, threads);
+        // NOTE: the tree is only cut back to its budget once the threads are done.
+        checkBudget();
+        this.iterations = iterations;
+        this.stats = instrumented ? new SearchStats() : null;
+        for (SearchStats x : workerStats) stats.add(x);
+        return bestChild(root);
+    }
+
+    /**
+     * Run the given number of iterations, each of which performs a batch of rollouts in parallel
+     * from the Node that it selects (leaf parallelization), and return the best child of the root.
+     * <p>
+     * The rollouts of a batch run concurrently on a pool of threads and
+     * their total score is back-propagated in one step, as that many playouts.
+     * There is only one tree, which is only touched by the calling thread.
+     *
+     * @param iterations the number of iterations (i.e. descents of the tree).
+     * @param rollouts   the number of rollouts (and threads) per iteration.
+     * @return the best child of the root.
+     */
+    public Node<G> runLeafParallel(int iterations, int rollouts) {
+        if (rollouts <= 1) return run(iterations);
+        List<Random> randoms = new ArrayList<>();
+        long seed = random.nextLong();
+        for (int k = 0; k < rollouts; k++) randoms.add(new FastRandom(FastRandom.seed(seed, k)));
+        SearchStats stats = instrumented ? new SearchStats() : null;
+        ExecutorService executor = Executors.newFixedThreadPool(rollouts);
+        try {
+            for (int i = 0; i < iterations; i++) {
+                List<Node<G>> path = descend(root, false, 0, stats);
+                State<G> start = path.get(path.size() - 1).state();
+                long begin = stats == null ? 0 : System.nanoTime();
+                int wins = 0;
+                if (start.isTerminal())
+                    // NOTE: every rollout from a terminal State is the same, so there is no need to run them.
+                    wins = rollouts * evaluation.evaluate(start, rollout.rollout(start, random));
+                else {
+                    List<Callable<Integer>> tasks = new ArrayList<>(rollouts);
+                    for (Random r : randoms) tasks.add(() -> evaluation.evaluate(start, rollout.rollout(start, r)));
+                    for (int score : invokeAll(executor, tasks)) wins += score;
+                }
+                if (stats != null) stats.record(SearchStats.Phase.ROLLOUT, 1, System.nanoTime() - begin);
+                update(path, wins, rollouts, false, 0, stats);
+                checkBudget();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        this.iterations = iterations;
+        this.stats = stats;
+        return bestChild(root);
+    }
+
+    /**
+     * Run the given number of iterations on several threads, all searching this one tree, in batches,
+     * and return the best child of the root.
+     * Unlike runTreeParallel, the tree is the same for the same random source, however the threads are scheduled.
+     * <p>
+     * For each batch, the calling thread selects (and expands) the path of each of threads iterations in turn,
+     * each path carrying a virtual loss so that the next one tends to differ;
+     * the rollouts of the batch then run concurrently, each with the random stream of its iteration;
+     * and finally their scores replace the virtual losses, in order.
+     * So only the rollouts are parallel, and they need not be thread-safe with respect to the tree.
+     *
+     * @param iterations  the total number of iterations.
+     * @param threads     the number of threads (and iterations per batch).
+     * @param virtualLoss the loss provisionally scored by each Node on the path of an iteration of the current batch.
+     * @return the best child of the root.
+     */
+    public Node<G> runBatched(int iterations, int threads, int virtualLoss) {
+        if (threads <= 1) return run(iterations);
+        long seed = random.nextLong();
+        FastRandom[] randoms = new FastRandom[threads];
+        for (int k = 0; k < threads; k++) randoms[k] = new FastRandom(0L);
+        List<List<Node<G>>> paths = new ArrayList<>(threads);
+        List<Callable<Integer>> tasks = new ArrayList<>(threads);
+        SearchStats stats = instrumented ? new SearchStats() : null;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < iterations; i += threads) {
+                paths.clear();
+                tasks.clear();
+                for (int k = 0; k < threads && i + k < iterations; k++) {
+                    List<Node<G>> path = descend(root, true, virtualLoss, stats);
+                    State<G> start = path.get(path.size() - 1).state();
+                    FastRandom r = randoms[k];
+                    r.setSeed(FastRandom.seed(seed, i + k));
+                    paths.add(path);
+                    tasks.add(() -> evaluation.evaluate(start, rollout.rollout(start, r)));
+                }
+                long begin = stats == null ? 0 : System.nanoTime();
+                List<Integer> scores = invokeAll(executor, tasks);
+                if (stats != null) stats.record(SearchStats.Phase.ROLLOUT, 1, System.nanoTime() - begin);
+                for (int k = 0; k < paths.size(); k++) update(paths.get(k), scores.get(k), 1, true, virtualLoss, stats);
+                checkBudget();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        this.iterations = iterations;
+        this.stats = stats;
+        return bestChild(root);
+    }
+
+    /**
+     * @return the transposition table of this search (which persists from one run to the next).
+     */
+    public TranspositionTable<G> transpositions() {
+        return transpositions;
+    }
+
+    /**
+     * Method to limit the number of Nodes of this search (see NodeBudget).
+     * The Nodes must support pruning (see Node.prune) and the ExpansionPolicy must take them from
+     * the transposition table (as distinct and lazy do), whose size is the number of Nodes counted against the budget.
+     *
+     * @param budget the NodeBudget, or null for no limit.
+     */
+    public void budget(NodeBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return the NodeBudget of this search (or null if it has no limit).
+     */
+    public NodeBudget budget() {
+        return budget;
+    }
+
+    /**
+     * @return the total number of Nodes evicted from this search to keep within its budget.
+     */
+    public long evicted() {
+        return evicted;
+    }
+
+    /**
+     * @return the root of this search tree.
+     */
+    public Node<G> root() {
+        return root;
+    }
+
+    /**
+     * Method to move the root of this search to the given State, keeping whatever part of the tree is still relevant.
+     * <p>
+     * Typically, state is the position after the engine's move and the opponent's reply,
+     * i.e. a grandchild of the current root: in that case the grandchild, with all its statistics and its subtree,
+     * becomes the new root, so that the next run starts warm.
+     * Children of the root are also matched.
+     * If no such Node exists (for example, it was never expanded, or is shared with a symmetric position),
+     * a new root is created for state and the transposition table is cleared.
+     * Otherwise, the rest of the old tree is discarded but the transposition table is kept:
+     * its positions which can still be reached from the new root keep their statistics.
+     * <p>
+     * NOTE: a Node which was expanded below the root may have children (shared through the transposition table)
+     * which are reflections or rotations of its successors, which the root must not have (see TranspositionTable.children).
+     * If the matching Node has any such child, the new root is a new Node for state, with the statistics of the match
+     * (see Node.increment), whose children are taken afresh from the table when it is expanded.
+     *
+     * @param state the State which is to be the new root (compared by equals).
+     * @return the new root.
+     */
+    public Node<G> reroot(State<G> state) {
+        Node<G> match = null;
+        if (state.equals(root.state())) match = root;
+        if (match == null) match = find(root.children(), state);
+        if (match == null)
+            for (Node<G> child : root.children()) {
+                match = find(child.children(), state);
+                if (match != null) break;
+            }
+        if (match == null) transpositions.clear();
+        else if (!successors(match)) {
+            Node<G> fresh = nodes.apply(state);
+            fresh.increment(match.wins(), match.playouts());
+            match = fresh;
+        }
+        root = match != null ? match : nodes.apply(state);
+        rootChildren = null;
+        return root;
+    }
+
+    /**
+     * Method to determine if every child of node is a successor of its State (rather than a reflection or rotation of one).
+     *
+     * @param node a Node.
+     * @return true if the children of node may be the children of the root.
+     */
+    private static <G extends Game> boolean successors(Node<G> node) {
+        if (node.children().isEmpty()) return true;
+        Set<State<G>> successors = new HashSet<>(node.state().successors());
+        for (Node<G> child : node.children()) if (!successors.contains(child.state())) return false;
+        return true;
+    }
+
+    /**
+     * Method to move the root of this search by playing a move (see reroot).
+     *
+     * @param move the move to be played from the State of the current root.
+     * @return the new root.
+     */
+    public Node<G> advance(Move<G> move) {
+        return reroot(root.state().next(move));
+    }
+
+    /**
+     * Method to find the Node (if any) among nodes whose State equals state.
+     *
+     * @param nodes a Collection of Nodes.
+     * @param state the State to be found.
+     * @return the matching Node or null.
+     */
+    private static <G extends Game> Node<G> find(Collection<Node<G>> nodes, State<G> state) {
+        for (Node<G> node : nodes) if (state.equals(node.state())) return node;
+        return null;
+    }
+
+    /**
+     * Method to choose the child of node with the best average score.
+     * Children which have never been visited are only chosen if there is no alternative.
+     *
+     * @param node a Node whose children are not empty.
+     * @return the best child.
+     */
+    public Node<G> bestChild(Node<G> node) {
+        Node<G> result = null;
+        double best = Double.NEGATIVE_INFINITY;
+        for (Node<G> child : node.children()) {
+            double value = child.playouts() == 0 ? Double.NEGATIVE_INFINITY : (double) child.wins() / child.playouts();
+            if (result == null || value > best) {
+                result = child;
+                best = value;
+            }
+        }
+        if (result == null) throw new RuntimeException("bestChild: no children for " + node);
+        return result;
+    }
+
+    /**
+     * One iteration of the search, starting at node.
+     *
+     * @param node        the root of the (sub-)tree to be searched.
+     * @param random      the random source for the rollout.
+     * @param shared      true if other threads may be searching the same tree at the same time.
+     * @param virtualLoss (only if shared) the loss which is provisionally scored by each Node on the path
+     *                    until the result of the rollout is known; this steers other threads onto other paths.
+     * @param stats       the SearchStats in which to record the phases (or null if the search is not instrumented).
+     */
+    private void simulate(Node<G> node, Random random, boolean shared, int virtualLoss, SearchStats stats) {
+        List<Node<G>> path = descend(node, shared, virtualLoss, stats);
+        State<G> start = path.get(path.size() - 1).state();
+        if (stats == null)
+            update(path, evaluation.evaluate(start, rollout.rollout(start, random)), 1, shared, virtualLoss, stats);
+        else {
+            long begin = System.nanoTime();
+            State<G> end = rollout.rollout(start, random, stats);
+            long rolled = System.nanoTime();
+            int score = evaluation.evaluate(start, end);
+            stats.record(SearchStats.Phase.ROLLOUT, 1, rolled - begin);
+            stats.record(SearchStats.Phase.EVALUATION, 1, System.nanoTime() - rolled);
+            stats.rollout(start, end);
+            update(path, score, 1, shared, virtualLoss, stats);
+        }
+        if (!shared) checkBudget();
+    }
+
+    /**
+     * The selection and expansion phases of one iteration.
+     *
+     * @param node        the root of the (sub-)tree to be searched.
+     * @param shared      true if other threads may be searching the same tree at the same time.
+     * @param virtualLoss (only if shared) the provisional loss.
+     * @param stats       the SearchStats in which to record the phases (or null if the search is not instrumented).
+     * @return the path from node to the Node from which the rollout should start.
+     */
+    private List<Node<G>> descend(Node<G> node, boolean shared, int virtualLoss, SearchStats stats) {
+        long begin = stats == null ? 0 : System.nanoTime();
+        long expanding = stats == null ? 0 : stats.nanos(SearchStats.Phase.EXPANSION);
+        List<Node<G>> path = new ArrayList<>();
+        Node<G> current = node;
+        visit(current, path, shared, virtualLoss);
+
+        while (!current.isLeaf() && !expansion.expandable(current)) {
+            current = selection.select(current);
+            visit(current, path, shared, virtualLoss);
+        }
+
+        if (!current.state().isTerminal()) {
+            expand(current, shared, stats);
+            if (!current.children().isEmpty()) {
+                current = selection.select(current);
+                visit(current, path, shared, virtualLoss);
+            }
+        }
+        // NOTE: the time of selection is that of the whole descent, less that of any expansion.
+        if (stats != null)
+            stats.record(SearchStats.Phase.SELECTION, 1, System.nanoTime() - begin - (stats.nanos(SearchStats.Phase.EXPANSION) - expanding));
+        return path;
+    }
+
+    /**
+     * The back propagation phase of one iteration.
+     *
+     * @param path        the path from the root of the search to the Node from which the rollout started.
+     * @param wins        the total score of the rollouts.
+     * @param playouts    the number of rollouts.
+     * @param shared      true if other threads may be searching the same tree at the same time.
+     * @param virtualLoss (only if shared) the provisional loss, which is now replaced by the real score.
+     * @param stats       the SearchStats in which to record the phase (or null if the search is not instrumented).
+     */
+    private void update(List<Node<G>> path, int wins, int playouts, boolean shared, int virtualLoss, SearchStats stats) {
+        long begin = stats == null ? 0 : System.nanoTime();
+        for (Node<G> nodeInPath : path)
+            if (shared) nodeInPath.increment(wins + virtualLoss, playouts - 1);
+            else nodeInPath.increment(wins, playouts);
+        if (stats != null) stats.record(SearchStats.Phase.BACKPROPAGATION, 1, System.nanoTime() - begin);
+    }
+
+    /**
+     * Method to add node to the path of the current iteration.
+     *
+     * @param node        the Node being visited.
+     * @param path        the path so far.
+     * @param shared      true if other threads may be searching the same tree at the same time.
+     * @param virtualLoss (only if shared) the provisional loss.
+     */
+    private void visit(Node<G> node, List<Node<G>> path, boolean shared, int virtualLoss) {
+        path.add(node);
+        if (shared) node.increment(-virtualLoss, 1);
+    }
+
+    /**
+     * Method to expand node.
+     * If the tree is shared, only one thread at a time expands any given Node:
+     * the others wait and then find whether it is still to be expanded.
+     *
+     * @param node   the Node to be expanded.
+     * @param shared true if other threads may be searching the same tree at the same time.
+     * @param stats  the SearchStats in which to record the phase (or null if the search is not instrumented).
+     */
+    private void expand(Node<G> node, boolean shared, SearchStats stats) {
+        if (!shared) expand(node, stats);
+        else synchronized (node) {
+            if (expansion.expandable(node)) expand(node, stats);
+        }
+    }
+
+    /**
+     * The expansion phase of one iteration (recording its time and the number of children it added, if instrumented).
+     *
+     * @param node  the Node to be expanded.
+     * @param stats the SearchStats in which to record the phase (or null if the search is not instrumented).
+     */
+    private void expand(Node<G> node, SearchStats stats) {
+        if (stats == null) {
+            expansion.expand(node, table(node));
+            return;
+        }
+        long begin = System.nanoTime();
+        int size = node.children().size();
+        expansion.expand(node, table(node));
+        stats.record(SearchStats.Phase.EXPANSION, 1, System.nanoTime() - begin);
+        stats.expanded(node.children().size() - size);
+    }
+
+    /**
+     * Method to yield the transposition table from which the children of node are to be taken:
+     * for the root, a view of the table whose Nodes are all real successors of the root (see TranspositionTable.children),
+     * because the State of the child which the search chooses is the move to be played.
+     *
+     * @param node the Node to be expanded.
+     * @return the table.
+     */
+    private TranspositionTable<G> table(Node<G> node) {
+        if (node != root) return transpositions;
+        // NOTE: the root is only expanded by one thread at a time (see expand).
+        if (rootChildren == null) rootChildren = transpositions.children(root.state());
+        return rootChildren;
+    }
+
+    /**
+     * Method to evict the coldest subtrees of this search if it has more Nodes than its budget allows.
+     * NOTE: this must only be called between iterations.
+     */
+    private void checkBudget() {
+        if (budget != null && transpositions.size() > budget.nodes()) evict();
+    }
+
+    /**
+     * Method to cut this search back to the target of its budget, keeping the Nodes which have been visited most.
+     * <p>
+     * Starting with the root, the hottest Node (the one with the most playouts) whose children have not yet been kept
+     * has all its children kept, for as long as they fit in the target.
+     * Every other kept Node is pruned: it keeps its statistics (and so the aggregate of its subtree) but not its children.
+     * So the tree keeps its most visited paths, and every Node which is kept either has all its children or none.
+     * The positions of the Nodes which are no longer in the tree are then removed from the transposition table.
+     */
+    private void evict() {
+        int target = budget.target();
+        Set<Node<G>> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        PriorityQueue<Node<G>> hottest = new PriorityQueue<>((a, b) -> Integer.compare(b.playouts(), a.playouts()));
+        kept.add(root);
+        hottest.add(root);
+        while (!hottest.isEmpty()) {
+            Node<G> node = hottest.peek();
+            if (node != root && kept.size() + node.children().size() > target) break;
+            hottest.poll();
+            for (Node<G> child : node.children())
+                if (kept.add(child) && !child.children().isEmpty()) hottest.add(child);
+        }
+        for (Node<G> node : hottest) node.prune();
+        evicted += transpositions.retain(kept);
+    }
+
+    /**
+     * Method to run tasks on a new pool of threads and wait for all of them to complete.
+     *
+     * @param tasks   the tasks.
+     * @param threads the number of threads in the pool.
+     */
+    private static <X> void invokeAll(List<Callable<X>> tasks, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            invokeAll(executor, tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Method to run tasks on executor and wait for all of them to complete.
+     *
+     * @param executor the ExecutorService.
+     * @param tasks    the tasks.
+     * @return the results of the tasks, in order.
+     */
+    private static <X> List<X> invokeAll(ExecutorService executor, List<Callable<X>> tasks) {
+        try {
+            List<X> result = new ArrayList<>(tasks.size());
+            for (Future<X> future : executor.invokeAll(tasks)) result.add(future.get());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("parallel search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("parallel search failed", e.getCause());
+        }
+    }
+
+    /**
+     * Method to yield the wins and playouts of node and of each of its children.
+     *
+     * @param node a Node.
+     * @return an array of (wins, playouts) pairs: node first, then its children in order.
+     */
+    private static <G extends Game> int[] statistics(Node<G> node) {
+        int[] result = new int[2 * (node.children().size() + 1)];
+        result[0] = node.wins();
+        result[1] = node.playouts();
+        int i = 2;
+        for (Node<G> child : node.children()) {
+            result[i++] = child.wins();
+            result[i++] = child.playouts();
+        }
+        return result;
+    }
+
+    /**
+     * Method to add the results of a worker tree to the root of this tree and its children.
+     *
+     * @param workerRoot the root of the worker tree (whose children correspond to children).
+     * @param initial    the statistics of workerRoot before the worker search began.
+     * @param children   the children of this root.
+     */
+    private void merge(Node<G> workerRoot, int[] initial, List<Node<G>> children) {
+        int[] stats = statistics(workerRoot);
+        if (stats.length != initial.length)
+            throw new RuntimeException("root-parallel search: worker root children changed");
+        root.increment(stats[0] - initial[0], stats[1] - initial[1]);
+        for (int i = 0; i < children.size(); i++)
+            children.get(i).increment(stats[2 * i + 2] - initial[2 * i + 2], stats[2 * i + 3] - initial[2 * i + 3]);
+    }
+
+    /**
+     * Primary constructor.
+     *
+     * @param root       the root of the search tree.
+     * @param nodes      a function to create a new (root) Node from a State; used for parallel search.
+     * @param selection  the SelectionPolicy.
+     * @param expansion  the ExpansionPolicy.
+     * @param rollout    the RolloutPolicy.
+     * @param evaluation the EvaluationPolicy.
+     * @param random     the random source for rollouts.
+     *                   Each worker thread of a parallel search has its own FastRandom, seeded from this one.
+     */
+    public MonteCarloTreeSearch(Node<G> root, Function<State<G>, Node<G>> nodes, SelectionPolicy<G> selection, ExpansionPolicy<G> expansion, RolloutPolicy<G> rollout, EvaluationPolicy<G> evaluation, Random random) {
+        this.root = root;
+        this.nodes = nodes;
+        this.selection = selection;
+        this.expansion = expansion;
+        this.rollout = rollout;
+        this.evaluation = evaluation;
+        this.random = random;
+        this.transpositions = new TranspositionTable<>(nodes);
+    }
+
+    /**
+     * Secondary constructor which uses UCB1 for selection and an unseeded (fast) random source.
+     *
+     * @param root       the root of the search tree.
+     * @param nodes      a function to create a new (root) Node from a State; used for parallel search.
+     * @param expansion  the ExpansionPolicy.
+     * @param rollout    the RolloutPolicy.
+     * @param evaluation the EvaluationPolicy.
+     */
+    public MonteCarloTreeSearch(Node<G> root, Function<State<G>, Node<G>> nodes, ExpansionPolicy<G> expansion, RolloutPolicy<G> rollout, EvaluationPolicy<G> evaluation) {
+        this(root, nodes, new UCB1<>(), expansion, rollout, evaluation, new FastRandom());
+    }
+
+    /**
+     * Secondary constructor which uses UCB1 for selection and a random source with the given seed,
+     * so that the search is reproducible.
+     *
+     * @param root       the root of the search tree.
+     * @param nodes      a function to create a new (root) Node from a State; used for parallel search.
+     * @param expansion  the ExpansionPolicy.
+     * @param rollout    the RolloutPolicy.
+     * @param evaluation the EvaluationPolicy.
+     * @param seed       the seed of the search.
+     */
+    public MonteCarloTreeSearch(Node<G> root, Function<State<G>, Node<G>> nodes, ExpansionPolicy<G> expansion, RolloutPolicy<G> rollout, EvaluationPolicy<G> evaluation, long seed) {
+        this(root, nodes, new UCB1<>(), expansion, rollout, evaluation, new FastRandom(seed));
+    }
+
+    private Node<G> root;
+    private final Function<State<G>, Node<G>> nodes;
+    private final SelectionPolicy<G> selection;
+    private final ExpansionPolicy<G> expansion;
+    private final RolloutPolicy<G> rollout;
+    private final EvaluationPolicy<G> evaluation;
+    private final Random random;
+    private final TranspositionTable<G> transpositions;
+    private TranspositionTable<G> rootChildren;
+    private int iterations;
+    private boolean instrumented;
+    private SearchStats stats;
+    private NodeBudget budget;
+    private long evicted;
+}
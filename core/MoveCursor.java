@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Class to represent the moves from a State which have not yet been tried, for a Node which is expanded
+ * one child at a time (see ExpansionPolicy.lazy).
+ * <p>
+ * The moves are held as their codes (see State.generateMoves), in order, so a cursor costs four bytes per move,
+ * whereas a child Node (with its State) costs a hundred bytes or more.
+ * The cursor also records the children which have been added from it, so that a move which leads to a child
+ * already added (a transposition, e.g. a symmetric move) can be skipped in constant time.
+ * NOTE: a cursor is not thread-safe (the search only advances it while it holds the lock on its Node).
+ */
+public class MoveCursor {
+
+    /**
+     * Method to create a cursor on all the moves of the player to move in state.
+     *
+     * @param state a State.
+     * @param <G>   the type of the Game.
+     * @return a new MoveCursor.
+     */
+    public static <G extends Game> MoveCursor of(State<G> state) {
+        int player = state.player();
+        int[] codes = new int[16];
+        int n = state.generateMoves(player, codes);
+        if (n > codes.length) state.generateMoves(player, codes = new int[n]);
+        return new MoveCursor(n < codes.length ? Arrays.copyOf(codes, n) : codes);
+    }
+
+    /**
+     * @return true if there are moves still to be tried.
+     */
+    public boolean hasNext() {
+        return next < codes.length;
+    }
+
+    /**
+     * @return the code of the next move to be tried.
+     */
+    public int next() {
+        if (!hasNext()) throw new RuntimeException("MoveCursor: no more moves");
+        return codes[next++];
+    }
+
+    /**
+     * @return the number of moves still to be tried.
+     */
+    public int remaining() {
+        return codes.length - next;
+    }
+
+    /**
+     * Method to record that child has been added from this cursor.
+     *
+     * @param child a child Node.
+     * @return true if child had not already been added from this cursor.
+     */
+    public boolean add(Object child) {
+        if (added == null) added = Collections.newSetFromMap(new IdentityHashMap<>(codes.length));
+        return added.add(child);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param codes the codes of the moves, in the order in which they are to be tried.
+     */
+    public MoveCursor(int[] codes) {
+        this.codes = codes;
+    }
+
+    private final int[] codes;
+    private int next;
+    private Set<Object> added; // created when the first child is added
+}
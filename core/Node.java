@@ -56,6 +56,28 @@ public interface Node<G extends Game> {
      */
     void backPropagate();
 
+    /**
+     * Method to record the result of one more playout through this Node.
+     *
+     * @param score the score of the playout (to be added to wins).
+     */
+    default void increment(int score) {
+        increment(score, 1);
+    }
+
+    /**
+     * Method to record the results of several playouts through this Node at once,
+     * for example when merging the statistics of independent search trees.
+     * MonteCarloTreeSearch updates the Nodes of each path with it, so a Node to be searched must override it:
+     * the default is for Nodes which are only explored (see explore and backPropagate).
+     *
+     * @param wins     the total score of the playouts.
+     * @param playouts the number of playouts.
+     */
+    default void increment(int wins, int playouts) {
+        throw new RuntimeException("increment: " + getClass().getSimpleName() + " does not support incremental updates");
+    }
+
     /**
      * Method to add a child to this Node.
      *
@@ -63,6 +85,43 @@ public interface Node<G extends Game> {
      */
     void addChild(State<G> state);
 
+    /**
+     * Method to add an existing Node as a child of this Node (for example, a Node shared through a transposition table).
+     * The default is for Nodes which do not support sharing.
+     *
+     * @param child the child Node.
+     */
+    default void addChild(Node<G> child) {
+        throw new RuntimeException("addChild: " + getClass().getSimpleName() + " does not support shared children");
+    }
+
+    /**
+     * @return the moves from this Node which are yet to be tried, while it is being expanded one child at a time
+     * (see ExpansionPolicy.lazy); otherwise null.
+     */
+    default MoveCursor untried() {
+        return null;
+    }
+
+    /**
+     * Method to set (or, with null, to clear) the moves from this Node which are yet to be tried.
+     * The default is for Nodes which do not support lazy expansion.
+     *
+     * @param untried a MoveCursor or null.
+     */
+    default void untried(MoveCursor untried) {
+        throw new RuntimeException("untried: " + getClass().getSimpleName() + " does not support lazy expansion");
+    }
+
+    /**
+     * Method to remove all the children of this Node (and any untried moves), so that it becomes a leaf of the search
+     * which keeps its statistics (see NodeBudget).
+     * The default is for Nodes which do not support pruning.
+     */
+    default void prune() {
+        throw new RuntimeException("prune: " + getClass().getSimpleName() + " does not support pruning");
+    }
+
     /**
      * @return the score for this Node and its descendents a win is worth 2 points, a draw is worth 1 point.
      */
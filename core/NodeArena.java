@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Class to represent an arena which holds all the Nodes of a search tree in parallel arrays (a "struct of arrays"),
+ * indexed by node id, rather than as separate objects with their own lists of children and statistics.
+ * <p>
+ * For each node, the arena holds its State, its wins and playouts (packed into one long, as in TicTacToeNode),
+ * the index of its first edge and its number of children.
+ * The edges are the ids of the children, and the children of a node occupy consecutive edges.
+ * A Node may be the child of several parents (see TranspositionTable), so the tree can be a directed acyclic graph.
+ * <p>
+ * Each node id has one small handle object which implements Node.
+ * Handles are created when their id is first allocated and are then reused, so reset does not have to discard them.
+ * Use node (e.g. as a method reference arena::node) as the Node factory of a MonteCarloTreeSearch.
+ * <p>
+ * NOTE: an arena is not thread-safe. It may be used for single-threaded search
+ * (including runLeafParallel, whose tree is only touched by the calling thread)
+ * but not for tree-parallel or root-parallel search.
+ *
+ * @param <G> the type of the Game.
+ */
+public class NodeArena<G extends Game> {
+
+    /**
+     * Method to allocate a new Node, with no children, for state.
+     *
+     * @param state a State.
+     * @return the Node.
+     */
+    public Node<G> node(State<G> state) {
+        if (size == states.length) grow(2 * size);
+        int id = size++;
+        states[id] = state;
+        childCount[id] = 0;
+        statistics[id] = 0L;
+        if (state.isTerminal()) {
+            Optional<Integer> winner = state.winner();
+            statistics[id] = pack(winner.isPresent() ? 2 : 1, 1);  // 2 for a win, 1 for a draw
+        }
+        if (handles[id] == null) handles[id] = new Handle(id);
+        return handles[id];
+    }
+
+    /**
+     * Method to forget all the Nodes of this arena, in constant time, so that it can be used for a new search.
+     * NOTE: Nodes allocated before the reset must no longer be used.
+     * Their States are only released as their ids are reused.
+     */
+    public void reset() {
+        size = 0;
+        edges = 0;
+    }
+
+    /**
+     * @return the number of Nodes in this arena.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of parent-child edges in this arena.
+     */
+    public int edges() {
+        return edges;
+    }
+
+    /**
+     * @return the number of Nodes that this arena can hold without growing.
+     */
+    public int capacity() {
+        return states.length;
+    }
+
+    /**
+     * Primary constructor.
+     *
+     * @param capacity the number of Nodes (and of edges) for which to allocate space initially.
+     */
+    @SuppressWarnings("unchecked")
+    public NodeArena(int capacity) {
+        int n = Math.max(1, capacity);
+        states = (State<G>[]) new State[n];
+        handles = new NodeArena.Handle[n];
+        statistics = new long[n];
+        firstChild = new int[n];
+        childCount = new int[n];
+        targets = new int[n];
+    }
+
+    /**
+     * Secondary constructor with room for 1024 Nodes to start with.
+     */
+    public NodeArena() {
+        this(1024);
+    }
+
+    private void addEdge(int parent, int child) {
+        if (childCount[parent] == 0) firstChild[parent] = edges;
+        else if (firstChild[parent] + childCount[parent] != edges)
+            throw new RuntimeException("NodeArena: the children of a node must be added one after another");
+        if (edges == targets.length) targets = Arrays.copyOf(targets, 2 * edges);
+        targets[edges++] = child;
+        childCount[parent]++;
+    }
+
+    private void grow(int capacity) {
+        states = Arrays.copyOf(states, capacity);
+        handles = Arrays.copyOf(handles, capacity);
+        statistics = Arrays.copyOf(statistics, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+    }
+
+    /*
+     * wins and playouts are packed into one long (wins in the high half), as in TicTacToeNode.
+     * NOTE: this relies on playouts never being negative.
+     */
+    private static long pack(int wins, int playouts) {
+        return ((long) wins << 32) + playouts;
+    }
+
+    /**
+     * The Node with a given id in this arena.
+     */
+    private class Handle implements Node<G> {
+
+        public boolean isLeaf() {
+            return state().isTerminal();
+        }
+
+        public State<G> state() {
+            return states[id];
+        }
+
+        public boolean white() {
+            State<G> state = state();
+            return state.player() == state.game().opener();
+        }
+
+        public List<Node<G>> children() {
+            if (childCount[id] == 0) return List.of();
+            if (children == null) children = new Children();
+            return children;
+        }
+
+        public void addChild(State<G> state) {
+            Node<G> child = node(state);
+            addEdge(id, ((Handle) child).id);
+        }
+
+        public void addChild(Node<G> child) {
+            if (!(child instanceof NodeArena<?>.Handle handle) || handle.arena() != NodeArena.this)
+                throw new RuntimeException("addChild: " + child + " does not belong to this arena");
+            addEdge(id, handle.id);
+        }
+
+        public void backPropagate() {
+            int wins = 0;
+            int playouts = 0;
+            for (int e = firstChild[id], end = e + childCount[id]; e < end; e++) {
+                long s = statistics[targets[e]];
+                wins += (int) (s >> 32);
+                playouts += (int) s;
+            }
+            statistics[id] = pack(wins, playouts);
+        }
+
+        public void increment(int score) {
+            statistics[id] += pack(score, 1);
+        }
+
+        public void increment(int wins, int playouts) {
+            statistics[id] += pack(wins, playouts);
+        }
+
+        public int wins() {
+            return (int) (statistics[id] >> 32);
+        }
+
+        public int playouts() {
+            return (int) statistics[id];
+        }
+
+        public String toString() {
+            return "node " + id + ": " + state();
+        }
+
+        private NodeArena<G> arena() {
+            return NodeArena.this;
+        }
+
+        private Handle(int id) {
+            this.id = id;
+        }
+
+        private final int id;
+        private List<Node<G>> children; // created when first needed (most nodes never have children)
+
+        /**
+         * A live view of the children of this node (so it stays valid as children are added, and across reset).
+         */
+        private class Children extends AbstractList<Node<G>> {
+            public Node<G> get(int index) {
+                if (index < 0 || index >= childCount[id]) throw new IndexOutOfBoundsException(index);
+                return handles[targets[firstChild[id] + index]];
+            }
+
+            public int size() {
+                return childCount[id];
+            }
+
+            public Iterator<Node<G>> iterator() {
+                return new Iterator<>() {
+                    public boolean hasNext() {
+                        return e < end;
+                    }
+
+                    public Node<G> next() {
+                        if (e >= end) throw new NoSuchElementException();
+                        return handles[targets[e++]];
+                    }
+
+                    private int e = firstChild[id];
+                    private final int end = e + childCount[id];
+                };
+            }
+        }
+    }
+
+    private State<G>[] states;
+    private Handle[] handles;
+    private long[] statistics;
+    private int[] firstChild;
+    private int[] childCount;
+    private int[] targets;      // the edges: the ids of the children of each node, in consecutive runs
+    private int size;
+    private int edges;
+}
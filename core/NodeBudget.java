@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * Class to represent a limit on the number of Nodes of a search (see MonteCarloTreeSearch.budget),
+ * so that a long search runs in bounded memory.
+ * <p>
+ * When the search has more Nodes than its budget, it evicts the coldest subtrees (those least visited)
+ * until it is back down to its target (three quarters of the budget, so that eviction is not needed again at once).
+ * An evicted subtree is cut off at its root, which keeps its statistics (the aggregate of the whole subtree)
+ * and is expanded afresh if the search reaches it again.
+ */
+public class NodeBudget {
+
+    /**
+     * Method to create a budget with the given number of Nodes.
+     *
+     * @param nodes the maximum number of Nodes.
+     * @return a new NodeBudget.
+     */
+    public static NodeBudget nodes(int nodes) {
+        return new NodeBudget(nodes);
+    }
+
+    /**
+     * Method to create a budget with the given number of bytes.
+     * The size of a Node (with its State and its entry in the transposition table) depends on the game:
+     * ExpansionBenchmark reports it (about 230 bytes for TicTacToe and 320 bytes for ExtendableTicTacToe).
+     *
+     * @param bytes        the maximum number of bytes.
+     * @param bytesPerNode the (estimated) size of one Node.
+     * @return a new NodeBudget.
+     */
+    public static NodeBudget bytes(long bytes, int bytesPerNode) {
+        return new NodeBudget((int) Math.min(Integer.MAX_VALUE, bytes / bytesPerNode));
+    }
+
+    /**
+     * @return the maximum number of Nodes.
+     */
+    public int nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of Nodes to which the search is cut back when it exceeds its budget.
+     */
+    public int target() {
+        return nodes - nodes / 4;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param nodes the maximum number of Nodes (at least 2).
+     */
+    public NodeBudget(int nodes) {
+        if (nodes < 2) throw new RuntimeException("NodeBudget: too small: " + nodes);
+        this.nodes = nodes;
+    }
+
+    public String toString() {
+        return "NodeBudget{" + nodes + " nodes}";
+    }
+
+    private final int nodes;
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Class to represent a store which holds all the Nodes of a search tree outside the Java heap,
+ * so that the heap used by the search (and the time spent in garbage collection) does not grow with the tree.
+ * <p>
+ * Each node is a fixed-width record, indexed by node id, in direct ByteBuffers which are allocated in chunks
+ * as the tree grows (so that the records never have to be copied):
+ * its wins and playouts (packed into one long, as in TicTacToeNode), the id of its first child,
+ * its number of children, whether it is terminal, and its State, written by a StateCodec.
+ * The children of a node have consecutive ids.
+ * <p>
+ * A Node of the store is a small handle which holds only the id of its record, and which is created when it is needed
+ * (by node, and by each read of the children of a node), so the heap holds nothing per node, however large the tree.
+ * Two handles on the same record are equal (but need not be the same object).
+ * A handle reads the State of its record (allocating a new State) each time state() is called,
+ * which the search does when it expands the node or starts a rollout from it, but not when it selects among children.
+ * <p>
+ * Use node (e.g. as a method reference store::node) as the Node factory of a MonteCarloTreeSearch,
+ * with ExpansionPolicy.unshared, which adds all the children of a node together, with addChild(State).
+ * Nodes cannot be shared between parents (the transposition table would in any case keep a State per Node on the heap),
+ * so neither ExpansionPolicy.distinct nor lazy can be used, and nor can a NodeBudget (a Node cannot be pruned).
+ * <p>
+ * NOTE: a store is not thread-safe. It may be used for single-threaded search
+ * (including runLeafParallel, whose tree is only touched by the calling thread)
+ * but not for tree-parallel or root-parallel search:
+ * once a Node has been allocated, allocating (or adding a child) on any other thread, until the next reset, throws an exception.
+ * NOTE: the direct buffers count against the JVM's limit on direct memory (-XX:MaxDirectMemorySize),
+ * which by default is the same as the maximum heap size.
+ *
+ * @param <G> the type of the Game.
+ */
+public class OffHeapNodeStore<G extends Game> {
+
+    /**
+     * Method to allocate a new Node, with no children, for state.
+     *
+     * @param state a State.
+     * @return the Node.
+     */
+    public Node<G> node(State<G> state) {
+        Thread thread = Thread.currentThread();
+        if (owner == null) owner = thread;
+        else if (owner != thread)
+            throw new RuntimeException("OffHeapNodeStore: a store is not thread-safe, but it was used by " + owner + " and " + thread);
+        if (size == (long) chunks.size() << CHUNK_BITS)
+            chunks.add(ByteBuffer.allocateDirect(width << CHUNK_BITS).order(ByteOrder.nativeOrder()));
+        int id = size++;
+        long statistics = 0L;
+        if (state.isTerminal()) {
+            Optional<Integer> winner = state.winner();
+            statistics = pack(winner.isPresent() ? 2 : 1, 1);  // 2 for a win, 1 for a draw
+        }
+        ByteBuffer chunk = chunk(id);
+        int offset = offset(id);
+        chunk.putLong(offset + STATISTICS, statistics).putInt(offset + FIRST, 0).putInt(offset + COUNT, 0)
+                .putInt(offset + TERMINAL, state.isTerminal() ? 1 : 0);
+        codec.write(state, chunk, offset + STATE);
+        return new Handle(id);
+    }
+
+    /**
+     * Method to forget all the Nodes of this store, in constant time, so that it can be used for a new search.
+     * The off-heap memory is kept for reuse.
+     * After a reset, the store may be used by another thread.
+     * NOTE: Nodes allocated before the reset must no longer be used.
+     */
+    public void reset() {
+        size = 0;
+        owner = null;
+    }
+
+    /**
+     * @return the number of Nodes in this store.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes of off-heap memory allocated by this store.
+     */
+    public long bytes() {
+        return (long) chunks.size() * width << CHUNK_BITS;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param codec the StateCodec with which to store the States of the Nodes.
+     */
+    public OffHeapNodeStore(StateCodec<G> codec) {
+        this.codec = codec;
+        this.width = STATE + codec.bytes();
+    }
+
+    private ByteBuffer chunk(int id) {
+        return chunks.get(id >>> CHUNK_BITS);
+    }
+
+    private int offset(int id) {
+        return (id & (1 << CHUNK_BITS) - 1) * width;
+    }
+
+    private long statistics(int id) {
+        return chunk(id).getLong(offset(id) + STATISTICS);
+    }
+
+    private void setStatistics(int id, long statistics) {
+        chunk(id).putLong(offset(id) + STATISTICS, statistics);
+    }
+
+    private int first(int id) {
+        return chunk(id).getInt(offset(id) + FIRST);
+    }
+
+    private int count(int id) {
+        return chunk(id).getInt(offset(id) + COUNT);
+    }
+
+    /*
+     * wins and playouts are packed into one long (wins in the high half), as in TicTacToeNode.
+     * NOTE: this relies on playouts never being negative.
+     */
+    private static long pack(int wins, int playouts) {
+        return ((long) wins << 32) + playouts;
+    }
+
+    /**
+     * A handle on the Node with a given id in this store.
+     */
+    private class Handle implements Node<G> {
+
+        public boolean isLeaf() {
+            return chunk(id).getInt(offset(id) + TERMINAL) != 0;
+        }
+
+        public State<G> state() {
+            return codec.read(chunk(id), offset(id) + STATE);
+        }
+
+        public boolean white() {
+            State<G> state = state();
+            return state.player() == state.game().opener();
+        }
+
+        public List<Node<G>> children() {
+            return count(id) == 0 ? List.of() : new Children();
+        }
+
+        public void addChild(State<G> state) {
+            int count = count(id);
+            if (count > 0 && first(id) + count != size)
+                throw new RuntimeException("OffHeapNodeStore: the children of a node must be added one after another");
+            int child = ((Handle) node(state)).id;
+            ByteBuffer chunk = chunk(id);
+            int offset = offset(id);
+            if (count == 0) chunk.putInt(offset + FIRST, child);
+            chunk.putInt(offset + COUNT, count + 1);
+        }
+
+        public void backPropagate() {
+            int wins = 0;
+            int playouts = 0;
+            for (int child = first(id), end = child + count(id); child < end; child++) {
+                long s = statistics(child);
+                wins += (int) (s >> 32);
+                playouts += (int) s;
+            }
+            setStatistics(id, pack(wins, playouts));
+        }
+
+        public void increment(int score) {
+            increment(score, 1);
+        }
+
+        public void increment(int wins, int playouts) {
+            setStatistics(id, statistics(id) + pack(wins, playouts));
+        }
+
+        public int wins() {
+            return (int) (statistics(id) >> 32);
+        }
+
+        public int playouts() {
+            return (int) statistics(id);
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof OffHeapNodeStore<?>.Handle)) return false;
+            OffHeapNodeStore<?>.Handle that = (OffHeapNodeStore<?>.Handle) o;
+            return that.store() == store() && that.id == id;
+        }
+
+        public int hashCode() {
+            return id;
+        }
+
+        public String toString() {
+            return "node " + id + ": " + state();
+        }
+
+        private OffHeapNodeStore<G> store() {
+            return OffHeapNodeStore.this;
+        }
+
+        private Handle(int id) {
+            this.id = id;
+        }
+
+        private final int id;
+
+        /**
+         * A live view of the children of this node (so it stays valid as children are added).
+         */
+        private class Children extends AbstractList<Node<G>> {
+            public Node<G> get(int index) {
+                if (index < 0 || index >= count(id)) throw new IndexOutOfBoundsException(index);
+                return new Handle(first(id) + index);
+            }
+
+            public int size() {
+                return count(id);
+            }
+        }
+    }
+
+    // the layout of a record
+    private static final int STATISTICS = 0, FIRST = 8, COUNT = 12, TERMINAL = 16, STATE = 20;
+    // each chunk holds 2^CHUNK_BITS records
+    private static final int CHUNK_BITS = 16;
+
+    private final StateCodec<G> codec;
+    private final int width;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int size;
+    private Thread owner; // the thread which has allocated the Nodes since the last reset
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class to walk the whole game tree from a State to a given depth (perft, by analogy with chess),
+ * counting the States it reaches: a test of the move generation and state transitions of a game
+ * (its counts must not change when they are made faster) and a measure of their speed (nodes per second).
+ * <p>
+ * The moves are generated and applied through their codes (State.generateMoves and nextByCode).
+ * The walk stops at a State which is terminal or at the given depth: these are the leaves.
+ * So if the depth is at least the length of the longest game, the leaves are all the possible games
+ * (255168 for TicTacToe, of which 46080 are draws).
+ */
+public class Perft {
+
+    /**
+     * Method to count the States reachable from state in up to depth moves.
+     *
+     * @param state the State from which to start.
+     * @param depth the number of moves.
+     * @param <G>   the type of the Game.
+     * @return the Count.
+     */
+    public static <G extends Game> Count count(State<G> state, int depth) {
+        Count result = new Count();
+        walk(state, depth, new int[depth][], result);
+        return result;
+    }
+
+    /**
+     * Method to count the States reachable from state in up to depth moves, in parallel:
+     * the subtrees of the first SPLIT moves are counted by separate tasks of pool.
+     *
+     * @param state the State from which to start.
+     * @param depth the number of moves.
+     * @param pool  the ForkJoinPool on which to count.
+     * @param <G>   the type of the Game.
+     * @return the Count (the same as that of count(state, depth)).
+     */
+    public static <G extends Game> Count count(State<G> state, int depth, ForkJoinPool pool) {
+        return pool.invoke(new Task<>(state, depth, 0));
+    }
+
+    /**
+     * Class to represent the counts of a walk.
+     */
+    public static class Count {
+
+        /**
+         * @return the number of States reached (including the one from which the walk started).
+         */
+        public long nodes() {
+            return nodes;
+        }
+
+        /**
+         * @return the number of States at which the walk stopped (because they were terminal or at the full depth).
+         */
+        public long leaves() {
+            return leaves;
+        }
+
+        /**
+         * @return the number of leaves which are won (by either player).
+         */
+        public long wins() {
+            return wins;
+        }
+
+        /**
+         * @return the number of leaves which are drawn (terminal without a winner).
+         */
+        public long draws() {
+            return draws;
+        }
+
+        /**
+         * Method to add the counts of another walk to this one.
+         *
+         * @param other a Count.
+         */
+        public void add(Count other) {
+            nodes += other.nodes;
+            leaves += other.leaves;
+            wins += other.wins;
+            draws += other.draws;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Count c && nodes == c.nodes && leaves == c.leaves && wins == c.wins && draws == c.draws;
+        }
+
+        public int hashCode() {
+            return Long.hashCode(nodes) * 31 + Long.hashCode(leaves);
+        }
+
+        public String toString() {
+            return "Count{nodes=" + nodes + ", leaves=" + leaves + ", wins=" + wins + ", draws=" + draws + "}";
+        }
+
+        private long nodes;
+        private long leaves;
+        private long wins;
+        private long draws;
+    }
+
+    /**
+     * The number of moves from the start of a parallel walk whose subtrees are counted by separate tasks.
+     */
+    static final int SPLIT = 2;
+
+    /**
+     * Method to walk the tree from state, adding to count.
+     *
+     * @param state   the current State.
+     * @param depth   the number of moves still to be made.
+     * @param buffers for each remaining depth, the buffer for the codes of the moves (allocated when first needed).
+     * @param count   the Count to which to add.
+     */
+    private static <G extends Game> void walk(State<G> state, int depth, int[][] buffers, Count count) {
+        count.nodes++;
+        if (leaf(state, depth, count)) return;
+        int n = moves(state, buffers, depth - 1);
+        int[] codes = buffers[depth - 1];
+        for (int i = 0; i < n; i++) walk(state.nextByCode(codes[i]), depth - 1, buffers, count);
+    }
+
+    /**
+     * Method to determine if the walk stops at state and, if so, to count it as a leaf.
+     */
+    private static <G extends Game> boolean leaf(State<G> state, int depth, Count count) {
+        boolean terminal = state.isTerminal();
+        if (!terminal && depth > 0) return false;
+        count.leaves++;
+        if (terminal) {
+            if (state.winner().isPresent()) count.wins++;
+            else count.draws++;
+        }
+        return true;
+    }
+
+    /**
+     * Method to write the codes of the moves from state into buffers[level] (replacing it if it is too short).
+     *
+     * @return the number of moves.
+     */
+    private static <G extends Game> int moves(State<G> state, int[][] buffers, int level) {
+        if (buffers[level] == null) buffers[level] = new int[16];
+        int n = state.generateMoves(state.player(), buffers[level]);
+        if (n > buffers[level].length) state.generateMoves(state.player(), buffers[level] = new int[n]);
+        return n;
+    }
+
+    /**
+     * Class to represent the task of counting the subtree of one State in a parallel walk.
+     * NOTE: a Task is never serialized (a State need not be Serializable).
+     */
+    @SuppressWarnings("serial")
+    private static class Task<G extends Game> extends RecursiveTask<Count> {
+
+        protected Count compute() {
+            if (ply >= SPLIT) return count(state, depth);
+            Count result = new Count();
+            result.nodes++;
+            if (leaf(state, depth, result)) return result;
+            int[][] buffers = new int[1][];
+            int n = moves(state, buffers, 0);
+            int[] codes = buffers[0];
+            List<Task<G>> tasks = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) tasks.add(new Task<>(state.nextByCode(codes[i]), depth - 1, ply + 1));
+            for (Task<G> task : invokeAll(tasks)) result.add(task.join());
+            return result;
+        }
+
+        Task(State<G> state, int depth, int ply) {
+            this.state = state;
+            this.depth = depth;
+            this.ply = ply;
+        }
+
+        private final State<G> state;
+        private final int depth;
+        private final int ply;
+    }
+}
@@ -25,7 +25,7 @@ public class RandomState {
     }
 
     public RandomState(int x, long seed) {
-        this(x, new Random(seed));
+        this(x, new FastRandom(seed));
     }
 
     public RandomState(int x) {
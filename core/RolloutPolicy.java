@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.Random;
+
+/**
+ * This interface defines the simulation (rollout) phase of a Monte Carlo Tree Search:
+ * how to play on from a newly expanded State.
+ *
+ * @param <G> the type of the Game.
+ */
+@FunctionalInterface
+public interface RolloutPolicy<G extends Game> {
+
+    /**
+     * Method to play out the game from state.
+     *
+     * @param state  the State from which to start.
+     * @param random the random source to be used for any choices which are not forced.
+     * @return the State at which the rollout stopped (not necessarily terminal).
+     */
+    State<G> rollout(State<G> state, Random random);
+
+    /**
+     * Method to play out the game from state in an instrumented search (see MonteCarloTreeSearch.instrument),
+     * recording the parts of the rollout in stats (see SearchStats.record(String, long, long)).
+     * By default, it records nothing.
+     *
+     * @param state  the State from which to start.
+     * @param random the random source to be used for any choices which are not forced.
+     * @param stats  the SearchStats of this thread.
+     * @return the State at which the rollout stopped (not necessarily terminal).
+     */
+    default State<G> rollout(State<G> state, Random random, SearchStats stats) {
+        return rollout(state, random);
+    }
+}
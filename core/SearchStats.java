@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class to represent the counters and timers of the phases of the iterations of a search
+ * (see MonteCarloTreeSearch.instrument and stats): for each phase, the number of calls and the nanoseconds spent;
+ * and also the number of moves of the rollouts and the number of children added by each expansion.
+ * <p>
+ * Selection is the descent of the tree to the Node to be expanded (less the time of expansion),
+ * and back propagation is the update of the statistics of the Nodes on the path.
+ * The time of the rollouts of leaf-parallel and batched runs is that of each batch (as a whole).
+ * <p>
+ * A RolloutPolicy may also record the parts of each rollout, by name (see record(String, long, long)),
+ * e.g. the time a game spends in canonicalizing its positions and in looking ahead.
+ * The parts are recorded only by the iterations of run, run(Duration), and tree- and root-parallel runs.
+ * NOTE: a SearchStats is not thread-safe: each thread of a parallel search records its own, which are then added together.
+ */
+public class SearchStats {
+
+    /**
+     * The phases of an iteration.
+     */
+    public enum Phase {SELECTION, EXPANSION, ROLLOUT, EVALUATION, BACKPROPAGATION}
+
+    /**
+     * @param phase a Phase.
+     * @return the number of times that phase was performed.
+     */
+    public long calls(Phase phase) {
+        return calls[phase.ordinal()];
+    }
+
+    /**
+     * @param phase a Phase.
+     * @return the total time spent in that phase, in nanoseconds.
+     */
+    public long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @param part the name of a part of a phase.
+     * @return the number of calls recorded for that part (zero if none).
+     */
+    public long calls(String part) {
+        long[] x = parts.get(part);
+        return x == null ? 0 : x[0];
+    }
+
+    /**
+     * @param part the name of a part of a phase.
+     * @return the time recorded for that part, in nanoseconds (zero if none).
+     */
+    public long nanos(String part) {
+        long[] x = parts.get(part);
+        return x == null ? 0 : x[1];
+    }
+
+    /**
+     * Method to record one (or more) calls of a part of a phase, e.g. of a rollout (see RolloutPolicy).
+     * The time of a part is included in that of its phase.
+     *
+     * @param part  the name of the part.
+     * @param calls the number of calls.
+     * @param nanos the time they took.
+     */
+    public void record(String part, long calls, long nanos) {
+        long[] x = parts.computeIfAbsent(part, k -> new long[2]);
+        x[0] += calls;
+        x[1] += nanos;
+    }
+
+    /**
+     * @return the total time spent in all the phases, in nanoseconds.
+     */
+    public long nanos() {
+        long result = 0;
+        for (long x : nanos) result += x;
+        return result;
+    }
+
+    /**
+     * @return the average number of moves of a rollout (only counting rollouts whose States keep count, see State.ply).
+     */
+    public double rolloutLength() {
+        return rollouts == 0 ? 0 : (double) rolloutMoves / rollouts;
+    }
+
+    /**
+     * @return the average number of children added by an expansion.
+     */
+    public double fanOut() {
+        long expansions = calls(Phase.EXPANSION);
+        return expansions == 0 ? 0 : (double) children / expansions;
+    }
+
+    /**
+     * Method to add the counts of another SearchStats (e.g. those of another thread) to this one.
+     *
+     * @param other a SearchStats.
+     */
+    public void add(SearchStats other) {
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] += other.calls[i];
+            nanos[i] += other.nanos[i];
+        }
+        rollouts += other.rollouts;
+        rolloutMoves += other.rolloutMoves;
+        children += other.children;
+        for (Map.Entry<String, long[]> e : other.parts.entrySet()) record(e.getKey(), e.getValue()[0], e.getValue()[1]);
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SearchStats:");
+        long total = Math.max(1, nanos());
+        for (Phase phase : Phase.values()) {
+            long n = calls(phase), t = nanos(phase);
+            sb.append(String.format("%n  %-15s %10d calls %12.3f ms %9.0f ns/call %5.1f%%", phase, n, t / 1E6, n == 0 ? 0.0 : (double) t / n, 100.0 * t / total));
+        }
+        for (String part : parts.keySet()) {
+            long n = calls(part), t = nanos(part);
+            sb.append(String.format("%n    %-13s %10d calls %12.3f ms %9.0f ns/call %5.1f%%", part, n, t / 1E6, n == 0 ? 0.0 : (double) t / n, 100.0 * t / total));
+        }
+        return sb.append(String.format("%n  rollout length %.2f moves, expansion fan-out %.2f children", rolloutLength(), fanOut())).toString();
+    }
+
+    /**
+     * Method to record one (or more) calls of phase.
+     *
+     * @param phase the Phase.
+     * @param calls the number of calls.
+     * @param nanos the time they took.
+     */
+    void record(Phase phase, int calls, long nanos) {
+        this.calls[phase.ordinal()] += calls;
+        this.nanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Method to record the length of a rollout.
+     *
+     * @param start the State from which the rollout started.
+     * @param end   the State at which it ended.
+     */
+    void rollout(State<?> start, State<?> end) {
+        int from = start.ply(), to = end.ply();
+        if (from < 0 || to < 0) return;
+        rollouts++;
+        rolloutMoves += to - from;
+    }
+
+    /**
+     * Method to record the number of children added by an expansion.
+     *
+     * @param added the number of children.
+     */
+    void expanded(int added) {
+        children += added;
+    }
+
+    private static final int PHASES = Phase.values().length;
+
+    private final long[] calls = new long[PHASES];
+    private final long[] nanos = new long[PHASES];
+    private long rollouts;
+    private long rolloutMoves;
+    private long children;
+    private final Map<String, long[]> parts = new LinkedHashMap<>(); // the calls and nanos of each part, in the order first recorded
+}
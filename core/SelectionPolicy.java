@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * This interface defines the selection phase of a Monte Carlo Tree Search:
+ * how to choose which child of an (expanded) Node to descend into next.
+ *
+ * @param <G> the type of the Game.
+ */
+@FunctionalInterface
+public interface SelectionPolicy<G extends Game> {
+
+    /**
+     * Method to choose one of the children of node.
+     *
+     * @param node a Node whose children are not empty.
+     * @return the child to be searched next.
+     */
+    Node<G> select(Node<G> node);
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.Optional;
+
+/**
+ * Class to represent a sequential probability ratio test of the Elo difference between two engines (A minus B),
+ * to stop a match (see Tournament.play) as soon as its result is decided:
+ * either the difference is elo0 (hypothesis H0, typically "A is no better") or it is elo1 (H1, "A is better by elo1").
+ * <p>
+ * After each game, the log-likelihood ratio (LLR) of H1 to H0 is calculated from the mean and variance of the points
+ * won by A per game (1 for a win, 1/2 for a draw), assuming they are normally distributed.
+ * H1 is accepted when the LLR reaches upper() and H0 when it falls to lower();
+ * alpha and beta are the probabilities of accepting H1 when H0 holds and of accepting H0 when H1 holds.
+ */
+public class Sprt {
+
+    /**
+     * The hypotheses between which the test decides.
+     */
+    public enum Hypothesis {H0, H1}
+
+    /**
+     * Method to calculate the log-likelihood ratio of H1 to H0, given the games so far.
+     *
+     * @param result the Result of the games so far.
+     * @return the LLR (0 if the games do not yet tell the hypotheses apart, e.g. if they are all drawn).
+     */
+    public double llr(Tournament.Result result) {
+        int n = result.games();
+        if (n < 2) return 0;
+        double mean = result.score();
+        double variance = (result.wins() * (1 - mean) * (1 - mean) + result.draws() * (0.5 - mean) * (0.5 - mean) + result.losses() * mean * mean) / n;
+        if (variance == 0) return 0;
+        return n * (score1 - score0) * (2 * mean - score0 - score1) / (2 * variance);
+    }
+
+    /**
+     * Method to decide between the hypotheses, given the games so far.
+     *
+     * @param result the Result of the games so far.
+     * @return the Hypothesis accepted, or empty if the test must go on.
+     */
+    public Optional<Hypothesis> decide(Tournament.Result result) {
+        double llr = llr(result);
+        if (llr >= upper()) return Optional.of(Hypothesis.H1);
+        if (llr <= lower()) return Optional.of(Hypothesis.H0);
+        return Optional.empty();
+    }
+
+    /**
+     * @return the LLR at which H0 is accepted.
+     */
+    public double lower() {
+        return Math.log(beta / (1 - alpha));
+    }
+
+    /**
+     * @return the LLR at which H1 is accepted.
+     */
+    public double upper() {
+        return Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Primary constructor.
+     *
+     * @param elo0  the Elo difference of H0.
+     * @param elo1  the Elo difference of H1 (greater than elo0).
+     * @param alpha the probability of accepting H1 when H0 holds.
+     * @param beta  the probability of accepting H0 when H1 holds.
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0) throw new RuntimeException("Sprt: elo1 must be greater than elo0");
+        if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) throw new RuntimeException("Sprt: alpha and beta must be between 0 and 1");
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.score0 = score(elo0);
+        this.score1 = score(elo1);
+    }
+
+    /**
+     * Secondary constructor with the usual error probabilities (alpha = beta = 0.05).
+     *
+     * @param elo0 the Elo difference of H0.
+     * @param elo1 the Elo difference of H1 (greater than elo0).
+     */
+    public Sprt(double elo0, double elo1) {
+        this(elo0, elo1, 0.05, 0.05);
+    }
+
+    public String toString() {
+        return String.format("SPRT(elo0=%.1f, elo1=%.1f, alpha=%.2f, beta=%.2f)", elo0, elo1, alpha, beta);
+    }
+
+    /**
+     * @return the expected score of A for the given Elo difference.
+     */
+    private static double score(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private final double elo0;
+    private final double elo1;
+    private final double alpha;
+    private final double beta;
+    private final double score0;
+    private final double score1;
+}
@@ -6,8 +6,10 @@ package com.phasmidsoftware.dsaipg.projects.mcts.core;
 
 import com.phasmidsoftware.dsaipg.adt.bqs.UnorderedIterator;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 
@@ -54,6 +56,26 @@ public interface State<G extends Game> {
      */
     Random random();
 
+    /**
+     * A 64-bit key for this State, for hash-based lookups (transposition tables, visited sets, etc.).
+     * Equal States must have equal keys; unequal States should have unequal keys with very high probability.
+     * Games are expected to override this with a key which is maintained incrementally (e.g. a Zobrist hash).
+     *
+     * @return the key of this State (by default, its hashCode).
+     */
+    default long key() {
+        return hashCode();
+    }
+
+    /**
+     * Method to determine how many moves have been made since the start of the game (e.g. to measure rollouts).
+     *
+     * @return the number of moves made to reach this State, or -1 if the game does not keep count.
+     */
+    default int ply() {
+        return -1;
+    }
+
     /**
      * Get the moves that can be made directly from the given state.
      * The moves can be in any order--the order will be randomized for usage.
@@ -71,6 +93,56 @@ public interface State<G extends Game> {
      */
     State<G> next(Move<G> move);
 
+    /**
+     * Method to write the codes of the moves that can be made directly from this State into buffer,
+     * so that moves can be enumerated (and, with nextByCode, applied) without allocating Move objects.
+     * The codes are in the same order as the moves of moves(player).
+     * If buffer is too short, only its length of codes is written, and the caller should try again with a longer one.
+     * Games are expected to override this (and nextByCode) with codes which they can decode directly:
+     * by default, a code is player << 16 plus the index of the move in moves(player).
+     *
+     * @param player the player of the moves.
+     * @param buffer the array into which to write the codes.
+     * @return the number of moves (which may be greater than buffer.length).
+     */
+    default int generateMoves(int player, int[] buffer) {
+        int n = 0;
+        for (Move<G> ignored : moves(player)) {
+            if (n < buffer.length) buffer[n] = player << 16 | n;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Method to determine the next State from the code of a move (see generateMoves).
+     *
+     * @param code the code of the move, as written by generateMoves.
+     * @return a new State.
+     */
+    default State<G> nextByCode(int code) {
+        int index = code & 0xFFFF;
+        Iterator<Move<G>> moves = moves(code >>> 16).iterator();
+        for (int i = 0; i < index && moves.hasNext(); i++) moves.next();
+        if (!moves.hasNext()) throw new RuntimeException("nextByCode: no move for code " + code);
+        return next(moves.next());
+    }
+
+    /**
+     * Method to yield every State which can follow this one by one move of player() (e.g. to check that a move is legal).
+     *
+     * @return the successors of this State, in the order of generateMoves (none if this State is terminal).
+     */
+    default List<State<G>> successors() {
+        if (isTerminal()) return List.of();
+        int[] codes = new int[16];
+        int n = generateMoves(player(), codes);
+        if (n > codes.length) generateMoves(player(), codes = new int[n]);
+        List<State<G>> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) result.add(nextByCode(codes[i]));
+        return result;
+    }
+
     /**
      * Method to yield a (random) iterator of moves for the given player.
      *
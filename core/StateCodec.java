@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This interface defines how to store a State of a Game in a fixed number of bytes,
+ * for example in the records of an OffHeapNodeStore.
+ *
+ * @param <G> the type of the Game.
+ */
+public interface StateCodec<G extends Game> {
+
+    /**
+     * @return the number of bytes needed for any State.
+     */
+    int bytes();
+
+    /**
+     * Method to write state into buffer.
+     *
+     * @param state  a State.
+     * @param buffer the buffer.
+     * @param offset the index of the first of the bytes() bytes to be written.
+     */
+    void write(State<G> state, ByteBuffer buffer, int offset);
+
+    /**
+     * Method to read a State written by write.
+     *
+     * @param buffer the buffer.
+     * @param offset the index of the first byte of the State.
+     * @return a State equal to the one written.
+     */
+    State<G> read(ByteBuffer buffer, int offset);
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Class to represent a match between two engine variants (A and B) which play many games against each other
+ * on a pool of threads, without any human input.
+ * <p>
+ * A plays first in the even-numbered games and B in the odd-numbered ones.
+ * Each engine of each game is created for that game, with a seed derived from the seed of the match
+ * (see FastRandom.seed), so, if the engines are deterministic for a given seed,
+ * the result of a match is the same however many threads play it.
+ * A match may be stopped early by a sequential probability ratio test (see Sprt).
+ * Every move is checked: an Engine which returns a State which is not a successor of the one it was given
+ * (see State.successors) fails the match.
+ *
+ * @param <G> the type of the Game.
+ */
+public class Tournament<G extends Game> {
+
+    /**
+     * This interface defines a player of one game.
+     *
+     * @param <G> the type of the Game.
+     */
+    @FunctionalInterface
+    public interface Engine<G extends Game> {
+        /**
+         * Method to choose the move to be made from state (whose player is that of this Engine).
+         *
+         * @param state the current State (not terminal).
+         * @return the State after the move (one of state.successors()).
+         */
+        State<G> move(State<G> state);
+    }
+
+    /**
+     * This interface defines an engine variant: a way to create the Engine for one side of one game.
+     *
+     * @param <G> the type of the Game.
+     */
+    @FunctionalInterface
+    public interface Variant<G extends Game> {
+        /**
+         * Method to create an Engine for one game.
+         *
+         * @param player the player for whom the Engine is to play.
+         * @param first  true if the Engine is to make the first move of the game.
+         * @param seed   the seed for the Engine's random choices.
+         * @return a new Engine.
+         */
+        Engine<G> engine(int player, boolean first, long seed);
+    }
+
+    /**
+     * Method to play the given number of games.
+     *
+     * @param games   the number of games.
+     * @param threads the number of games played at the same time (each on its own thread).
+     * @return the Result, from A's point of view.
+     */
+    public Result play(int games, int threads) {
+        return play(games, threads, null, null);
+    }
+
+    /**
+     * Method to play at most the given number of games, stopping as soon as sprt (if any) has decided.
+     * The games are played concurrently but their results are taken in order (game 0, then game 1, etc.),
+     * so that the test stops at the same game however many threads play the match.
+     * When it stops, the games which have not started are cancelled (those being played are finished but ignored).
+     *
+     * @param games    the maximum number of games.
+     * @param threads  the number of games played at the same time (each on its own thread).
+     * @param sprt     the sequential probability ratio test which decides when to stop, or null to play all the games.
+     * @param progress a listener which is given the Result so far (on the calling thread) after each game, or null.
+     * @return the Result, from A's point of view.
+     */
+    public Result play(int games, int threads, Sprt sprt, Consumer<Result> progress) {
+        Result result = new Result();
+        long begin = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Result>> futures = new ArrayList<>(games);
+            for (int g = 0; g < games; g++) {
+                int game = g;
+                futures.add(executor.submit(() -> play(game)));
+            }
+            for (Future<Result> future : futures) {
+                result.add(future.get());
+                result.nanos = System.nanoTime() - begin;
+                if (progress != null) progress.accept(result);
+                if (sprt != null && sprt.decide(result).isPresent()) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("tournament interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("tournament game failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Method to play one game.
+     *
+     * @param game the number of the game.
+     * @return the Result of the one game.
+     */
+    Result play(int game) {
+        State<G> state = start.get();
+        int first = state.player();
+        boolean aFirst = game % 2 == 0;
+        int aPlayer = aFirst ? first : 1 - first;
+        Engine<G> engineA = a.engine(aPlayer, aFirst, FastRandom.seed(seed, 2L * game));
+        Engine<G> engineB = b.engine(1 - aPlayer, !aFirst, FastRandom.seed(seed, 2L * game + 1));
+        Result result = new Result();
+        while (!state.isTerminal()) {
+            boolean aToMove = state.player() == aPlayer;
+            long begin = System.nanoTime();
+            State<G> next = (aToMove ? engineA : engineB).move(state);
+            long nanos = System.nanoTime() - begin;
+            if (!state.successors().contains(next))
+                throw new RuntimeException("tournament game " + game + ": engine " + (aToMove ? "A" : "B") + " made an illegal move from " + state + " to " + next);
+            state = next;
+            if (aToMove) {
+                result.decisionsA++;
+                result.latencyA += nanos;
+            } else {
+                result.decisionsB++;
+                result.latencyB += nanos;
+            }
+        }
+        if (state.winner().isEmpty()) result.draws++;
+        else if (state.winner().get() == aPlayer) result.wins++;
+        else result.losses++;
+        return result;
+    }
+
+    /**
+     * Class to represent the result of a match (or of one game), from A's point of view.
+     * The intervals are 95% confidence intervals.
+     */
+    public static class Result {
+
+        public int wins() {
+            return wins;
+        }
+
+        public int draws() {
+            return draws;
+        }
+
+        public int losses() {
+            return losses;
+        }
+
+        /**
+         * @return the number of games.
+         */
+        public int games() {
+            return wins + draws + losses;
+        }
+
+        /**
+         * @return the number of games per second of elapsed time (0 if there are no games).
+         */
+        public double gamesPerSecond() {
+            return games() == 0 || nanos == 0 ? 0 : games() / (nanos / 1E9);
+        }
+
+        /**
+         * @return the average time taken by A to choose a move, in milliseconds.
+         */
+        public double latencyA() {
+            return decisionsA == 0 ? 0 : latencyA / 1E6 / decisionsA;
+        }
+
+        /**
+         * @return the average time taken by B to choose a move, in milliseconds.
+         */
+        public double latencyB() {
+            return decisionsB == 0 ? 0 : latencyB / 1E6 / decisionsB;
+        }
+
+        /**
+         * @return the number of moves made by A.
+         */
+        public long decisionsA() {
+            return decisionsA;
+        }
+
+        /**
+         * @return the number of moves made by B.
+         */
+        public long decisionsB() {
+            return decisionsB;
+        }
+
+        /**
+         * @return the score of A: the fraction of the points (1 per win, 1/2 per draw) won by A (0 if there are no games).
+         */
+        public double score() {
+            int n = games();
+            return n == 0 ? 0 : (wins + draws / 2.0) / n;
+        }
+
+        /**
+         * Method to yield the confidence interval of the score of A,
+         * from the variance of the points won per game (whose mean is the score).
+         *
+         * @return the lower and upper bounds (an empty interval, at 0, if there are no games).
+         */
+        public double[] scoreInterval() {
+            int n = games();
+            if (n == 0) return new double[]{0, 0};
+            double s = score();
+            double variance = (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s) + losses * s * s) / n;
+            double margin = Z * Math.sqrt(variance / n);
+            return new double[]{Math.max(0, s - margin), Math.min(1, s + margin)};
+        }
+
+        /**
+         * @return the difference in Elo rating (A minus B) corresponding to the score (0 if there are no games).
+         * NOTE: the score is first kept at least half a point (of all the games) away from 0 and 1,
+         * so that a match which one side has won every game of (common in short matches) has a finite Elo.
+         */
+        public double elo() {
+            return elo(score(), games());
+        }
+
+        /**
+         * @return the difference in Elo rating corresponding to each bound of the score interval
+         * (with the same adjustment as elo; an empty interval, at 0, if there are no games).
+         */
+        public double[] eloInterval() {
+            double[] interval = scoreInterval();
+            return new double[]{elo(interval[0], games()), elo(interval[1], games())};
+        }
+
+        /**
+         * Method to yield the Wilson confidence interval of a proportion (e.g. of wins, draws or losses).
+         *
+         * @param k the number of games with the outcome.
+         * @param n the number of games.
+         * @return the lower and upper bounds.
+         */
+        public static double[] wilson(int k, int n) {
+            if (n == 0) return new double[]{0, 1};
+            double p = (double) k / n, z2 = Z * Z;
+            double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+            double margin = Z / (1 + z2 / n) * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n));
+            return new double[]{Math.max(0, center - margin), Math.min(1, center + margin)};
+        }
+
+        /**
+         * Method to add the result of some more games to this Result (thread-safe).
+         *
+         * @param other a Result.
+         */
+        public synchronized void add(Result other) {
+            wins += other.wins;
+            draws += other.draws;
+            losses += other.losses;
+            decisionsA += other.decisionsA;
+            latencyA += other.latencyA;
+            decisionsB += other.decisionsB;
+            latencyB += other.latencyB;
+        }
+
+        public String toString() {
+            int n = games();
+            return String.format("%d games (%.1f games/sec): W %s D %s L %s score %s Elo %s; decision latency A %.2f ms, B %.2f ms",
+                    n, gamesPerSecond(), rate(wins, n), rate(draws, n), rate(losses, n),
+                    interval(score(), scoreInterval(), "%.3f"), interval(elo(), eloInterval(), "%.0f"), latencyA(), latencyB());
+        }
+
+        private static String rate(int k, int n) {
+            return k + " " + interval(n == 0 ? 0 : (double) k / n, wilson(k, n), "%.3f");
+        }
+
+        private static String interval(double x, double[] bounds, String format) {
+            return String.format(format + " [" + format + ", " + format + "]", x, bounds[0], bounds[1]);
+        }
+
+        /**
+         * @return the difference in Elo rating corresponding to score, which is clamped to [1/2n, 1 - 1/2n] (0 if n is 0).
+         */
+        private static double elo(double score, int n) {
+            if (n == 0) return 0;
+            double bound = 0.5 / n;
+            return -400 * Math.log10(1 / Math.min(Math.max(score, bound), 1 - bound) - 1);
+        }
+
+        private static final double Z = 1.96;   // for 95% confidence
+
+        private int wins;
+        private int draws;
+        private int losses;
+        private long decisionsA;
+        private long latencyA;      // nanoseconds
+        private long decisionsB;
+        private long latencyB;      // nanoseconds
+        private long nanos;         // the elapsed time of the match
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param start a supplier of the start State of each game.
+     * @param a     the variant A.
+     * @param b     the variant B.
+     * @param seed  the seed of the match.
+     */
+    public Tournament(Supplier<State<G>> start, Variant<G> a, Variant<G> b, long seed) {
+        this.start = start;
+        this.a = a;
+        this.b = b;
+        this.seed = seed;
+    }
+
+    private final Supplier<State<G>> start;
+    private final Variant<G> a;
+    private final Variant<G> b;
+    private final long seed;
+}
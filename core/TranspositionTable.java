@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Class to represent the transposition table of a Monte Carlo Tree Search.
+ * <p>
+ * The table maps the canonical key of a position (for example, the position normalized for symmetry)
+ * to the one Node which represents all the States with that key.
+ * The key must identify the position exactly (e.g. the position itself, or an exact code of it), not a hash of it:
+ * two positions whose hashes collided would be merged into one Node, and their statistics silently combined.
+ * When the same position is reached by different sequences of moves (a transposition),
+ * every parent shares that Node, so that the search tree becomes a directed acyclic graph
+ * and the position is searched (and its statistics accumulated) only once.
+ * <p>
+ * NOTE: the State of a shared Node is the one first seen for its key,
+ * which may be a reflection or rotation of the State reached by another parent.
+ * That does not matter below the root, because the value of a position does not depend on its orientation;
+ * but the State of a child of the root is the move that the search chooses, so it must be a real successor of the root:
+ * the children of the root are therefore taken from a view of this table (see children)
+ * which does not share a Node whose State is oriented otherwise.
+ * <p>
+ * The table is safe for use by several threads.
+ *
+ * @param <G> the type of the Game.
+ */
+public class TranspositionTable<G extends Game> {
+
+    /**
+     * Method to get the Node for state, creating it (and entering it into this table) if its key is new.
+     *
+     * @param key   the canonical key of state.
+     * @param state a State.
+     * @return the Node shared by all States with the given key.
+     */
+    public Node<G> get(Object key, State<G> state) {
+        if (shared == null) return table.computeIfAbsent(key, k -> nodes.apply(state));
+        Node<G> node = shared.get(key, state);
+        return successors.contains(node.state()) ? node : table.computeIfAbsent(key, k -> nodes.apply(state));
+    }
+
+    /**
+     * Method to yield the table from which the children of parent (the root of a search) are to be taken.
+     * Its get yields the Node of this table for the key, if the State of that Node is a successor of parent;
+     * otherwise (it is a reflection or rotation of the successor) a Node of its own for the successor itself,
+     * which is not entered into this table (it can only be reached from parent).
+     * The size, retain and clear of the view concern only those Nodes of its own.
+     *
+     * @param parent the State whose children are to be taken from the view.
+     * @return a view of this table.
+     */
+    public TranspositionTable<G> children(State<G> parent) {
+        return new TranspositionTable<>(nodes, this, new HashSet<>(parent.successors()));
+    }
+
+    /**
+     * @return the number of distinct positions (and so Nodes) in this table.
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Method to forget the positions whose Nodes are not in nodes (for example, those evicted from the search).
+     *
+     * @param nodes the Nodes to be kept.
+     * @return the number of positions forgotten.
+     */
+    public int retain(Set<Node<G>> nodes) {
+        int size = table.size();
+        table.values().removeIf(node -> !nodes.contains(node));
+        return size - table.size();
+    }
+
+    /**
+     * Method to forget all the positions in this table.
+     */
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param nodes a function to create a new Node from a State.
+     */
+    public TranspositionTable(Function<State<G>, Node<G>> nodes) {
+        this(nodes, null, null);
+    }
+
+    /**
+     * Constructor of a view (see children).
+     *
+     * @param nodes      a function to create a new Node from a State.
+     * @param shared     the table whose Nodes are shared (or null).
+     * @param successors the States which may be shared (or null).
+     */
+    private TranspositionTable(Function<State<G>, Node<G>> nodes, TranspositionTable<G> shared, Set<State<G>> successors) {
+        this.nodes = nodes;
+        this.shared = shared;
+        this.successors = successors;
+    }
+
+    private final Function<State<G>, Node<G>> nodes;
+    private final TranspositionTable<G> shared;
+    private final Set<State<G>> successors;
+    private final Map<Object, Node<G>> table = new ConcurrentHashMap<>();
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * The standard UCB1 (Upper Confidence Bound) SelectionPolicy.
+ *
+ * @param <G> the type of the Game.
+ */
+public class UCB1<G extends Game> implements SelectionPolicy<G> {
+
+    /**
+     * Method to choose the child of node with the greatest UCB1 value.
+     * Ties are resolved in favor of the first such child.
+     *
+     * @param node a Node whose children are not empty.
+     * @return the child to be searched next.
+     */
+    public Node<G> select(Node<G> node) {
+        double logParentPlayouts = Math.log(Math.max(1, node.playouts()));
+        Node<G> result = null;
+        double best = Double.NEGATIVE_INFINITY;
+        for (Node<G> child : node.children()) {
+            double value = value(child, logParentPlayouts);
+            if (result == null || value > best) {
+                result = child;
+                best = value;
+            }
+        }
+        if (result == null) throw new RuntimeException("select: no children for " + node);
+        return result;
+    }
+
+    /**
+     * Method to yield the UCB1 value of a node.
+     *
+     * @param node              the Node.
+     * @param logParentPlayouts the natural log of the number of playouts of the parent of node.
+     * @return the average score plus the exploration term; unvisited nodes get Double.MAX_VALUE.
+     */
+    public double value(Node<G> node, double logParentPlayouts) {
+        int playouts = node.playouts();
+        if (playouts == 0) return Double.MAX_VALUE;
+        return (double) node.wins() / playouts + c * Math.sqrt(logParentPlayouts / playouts);
+    }
+
+    /**
+     * Primary constructor.
+     *
+     * @param c the exploration constant.
+     */
+    public UCB1(double c) {
+        this.c = c;
+    }
+
+    /**
+     * Secondary constructor which uses the textbook exploration constant, sqrt(2).
+     */
+    public UCB1() {
+        this(Math.sqrt(2));
+    }
+
+    private final double c;
+}
@@ -0,0 +1,53 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ChildListTest {
+
+    /**
+     * Test that elements are appended in order, across growth, and that clear empties the list.
+     */
+    @Test
+    public void testAdd() {
+        ChildList<Integer> list = new ChildList<>();
+        assertTrue(list.isEmpty());
+        for (int i = 0; i < 100; i++) list.add(i);
+        assertEquals(100, list.size());
+        for (int i = 0; i < 100; i++) assertEquals(Integer.valueOf(i), list.get(i));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(100));
+        assertEquals(List.of(0, 1, 2), list.subList(0, 3));
+        list.clear();
+        assertTrue(list.isEmpty());
+        list.add(7);
+        assertEquals(List.of(7), list);
+    }
+
+    /**
+     * Test that a reader which iterates while another thread appends only ever sees elements which are in place.
+     */
+    @Test
+    public void testConcurrentReader() throws InterruptedException {
+        ChildList<Integer> list = new ChildList<>();
+        int n = 100000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (list.size() < n) {
+                    int i = 0;
+                    for (Integer e : list) assertEquals(Integer.valueOf(i++), e);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < n; i++) list.add(i);
+        reader.join();
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,64 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class FastRandomTest {
+
+    /**
+     * Test that the same seed gives the same sequence (also after setSeed) and that split gives a different one.
+     */
+    @Test
+    public void testSeed() {
+        FastRandom a = new FastRandom(42L), b = new FastRandom(42L);
+        for (int i = 0; i < 100; i++) assertEquals(a.nextLong(), b.nextLong());
+        a.setSeed(7L);
+        b.setSeed(7L);
+        assertEquals(a.nextInt(1000), b.nextInt(1000));
+        // setSeed also discards the Gaussian which Random keeps for the next call
+        a.nextGaussian();
+        a.setSeed(7L);
+        b.setSeed(7L);
+        for (int i = 0; i < 3; i++) assertEquals(a.nextGaussian(), b.nextGaussian(), 0.0);
+        FastRandom c = a.split();
+        assertNotEquals(a.nextLong(), c.nextLong());
+        assertNotEquals(new FastRandom().nextLong(), new FastRandom().nextLong());
+    }
+
+    /**
+     * Test that nextInt(bound) is in range and (roughly) uniform, including for a bound which is not a power of 2.
+     */
+    @Test
+    public void testNextInt() {
+        Random random = new FastRandom(0L);
+        int[] counts = new int[9];
+        for (int i = 0; i < 90000; i++) counts[random.nextInt(9)]++;
+        for (int count : counts) assertEquals(10000, count, 500);
+        for (int i = 0; i < 1000; i++) {
+            int x = random.nextInt(Integer.MAX_VALUE - 1);
+            assertTrue(x >= 0 && x < Integer.MAX_VALUE - 1);
+            double d = random.nextDouble();
+            assertTrue(d >= 0 && d < 1);
+        }
+        assertThrows(IllegalArgumentException.class, () -> random.nextInt(0));
+    }
+
+    /**
+     * Test that current yields one FastRandom per thread.
+     */
+    @Test
+    public void testCurrent() throws InterruptedException {
+        FastRandom mine = FastRandom.current();
+        assertSame(mine, FastRandom.current());
+        AtomicReference<FastRandom> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> other.set(FastRandom.current()));
+        thread.start();
+        thread.join();
+        assertNotNull(other.get());
+        assertNotSame(mine, other.get());
+    }
+}
@@ -0,0 +1,337 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MonteCarloTreeSearchTest {
+
+    /**
+     * Test that every iteration is counted at the root and that run returns a child of the root.
+     */
+    @Test
+    public void testRun() {
+        TicTacToeNode root = new TicTacToeNode(new TicTacToe(0L).start());
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new, new UCB1<>(),
+                ExpansionPolicy.distinct(s -> s), (s, r) -> s, (start, end) -> 1, new Random(0L));
+        Node<TicTacToe> best = search.run(100);
+        assertTrue(root.children().contains(best));
+        assertEquals(100, root.playouts());
+        assertEquals(100, root.wins());
+        assertEquals(9, root.children().size());
+    }
+
+    /**
+     * Test that a time-budgeted search stops at the deadline, or at the iteration limit if that comes first.
+     */
+    @Test
+    public void testRunBudget() {
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(new TicTacToeNode(new TicTacToe(0L).start()), TicTacToeNode::new, new UCB1<>(),
+                ExpansionPolicy.distinct(s -> s), (s, r) -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return s;
+                }, (start, end) -> 1, new Random(0L));
+        assertNotNull(search.run(Duration.ZERO));
+        assertEquals(1, search.iterations());
+        search.run(Duration.ofMillis(50));
+        int timed = search.iterations();
+        assertTrue(timed > 1);
+        assertTrue(timed <= 50);
+        search.run(10, Instant.now().plusSeconds(60));
+        assertEquals(10, search.iterations());
+        assertEquals(1 + timed + 10, search.root().playouts());
+    }
+
+    /**
+     * Test that transposed positions share one Node, which is entered once into the transposition table.
+     */
+    @Test
+    public void testTranspositions() {
+        TicTacToeNode root = new TicTacToeNode(new TicTacToe(0L).start());
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new, new UCB1<>(),
+                ExpansionPolicy.distinct(s -> s), (s, r) -> s, (start, end) -> 1, new Random(0L));
+        search.run(2000);
+        Set<Node<TicTacToe>> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        int edges = 0;
+        Deque<Node<TicTacToe>> stack = new ArrayDeque<>(List.of(root));
+        while (!stack.isEmpty()) {
+            Node<TicTacToe> node = stack.pop();
+            if (!nodes.add(node)) continue;
+            edges += node.children().size();
+            stack.addAll(node.children());
+        }
+        assertEquals(search.transpositions().size() + 1, nodes.size());
+        assertTrue(edges > nodes.size() - 1);
+        State<TicTacToe> state = root.state();
+        for (int i = 0; i < 5; i++) state = state.next(state.moves(state.player()).iterator().next());
+        search.reroot(state);
+        assertEquals(0, search.transpositions().size());
+    }
+
+    /**
+     * Test that root parallelization merges the statistics of every tree into the children of the root.
+     */
+    @Test
+    public void testRunParallel() {
+        TicTacToeNode root = new TicTacToeNode(new TicTacToe(0L).start());
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new, new UCB1<>(),
+                ExpansionPolicy.distinct(s -> s), (s, r) -> s, (start, end) -> 1, new Random(0L));
+        Node<TicTacToe> best = search.run(101, 4);
+        assertTrue(root.children().contains(best));
+        assertEquals(9, root.children().size());
+        assertEquals(101, root.playouts());
+        int playouts = 0;
+        for (Node<TicTacToe> child : root.children()) playouts += child.playouts();
+        assertEquals(101, playouts);
+    }
+
+    /**
+     * Test that tree parallelization expands each Node once and removes every virtual loss.
+     */
+    @Test
+    public void testRunTreeParallel() {
+        TicTacToeNode root = new TicTacToeNode(new TicTacToe(0L).start());
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new, new UCB1<>(),
+                ExpansionPolicy.distinct(s -> s), (s, r) -> s, (start, end) -> 1, new Random(0L));
+        Node<TicTacToe> best = search.runTreeParallel(500, 4, 10);
+        assertTrue(root.children().contains(best));
+        assertEquals(9, root.children().size());
+        assertEquals(500, root.playouts());
+        assertEquals(500, root.wins());
+        for (Node<TicTacToe> child : root.children()) {
+            assertEquals(child.playouts(), child.wins());
+            assertTrue(child.children().size() <= 8);
+        }
+    }
+
+    /**
+     * Test that leaf parallelization backs up every rollout of a batch.
+     */
+    @Test
+    public void testRunLeafParallel() {
+        TicTacToeNode root = new TicTacToeNode(new TicTacToe(0L).start());
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new, new UCB1<>(),
+                ExpansionPolicy.distinct(s -> s), (s, r) -> s, (start, end) -> 1, new Random(0L));
+        Node<TicTacToe> best = search.runLeafParallel(50, 4);
+        assertTrue(root.children().contains(best));
+        assertEquals(200, root.playouts());
+        assertEquals(200, root.wins());
+    }
+
+    /**
+     * Test that batched tree parallelization counts every iteration and removes every virtual loss.
+     */
+    @Test
+    public void testRunBatched() {
+        TicTacToeNode root = new TicTacToeNode(new TicTacToe(0L).start());
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new, new UCB1<>(),
+                ExpansionPolicy.distinct(s -> s), (s, r) -> s, (start, end) -> 1, new Random(0L));
+        Node<TicTacToe> best = search.runBatched(501, 4, 10);
+        assertTrue(root.children().contains(best));
+        assertEquals(9, root.children().size());
+        assertEquals(501, root.playouts());
+        assertEquals(501, root.wins());
+        for (Node<TicTacToe> child : root.children()) assertEquals(child.playouts(), child.wins());
+    }
+
+    /**
+     * Test that, with random rollouts, the same seed gives the same tree for each kind of run but tree-parallel
+     * (and that a different seed does not).
+     */
+    @Test
+    public void testReproducible() {
+        List<java.util.function.Consumer<MonteCarloTreeSearch<TicTacToe>>> runs = List.of(
+                search -> search.run(2000),
+                search -> search.run(2000, 3),
+                search -> search.runLeafParallel(500, 3),
+                search -> search.runBatched(2000, 3, 10));
+        for (java.util.function.Consumer<MonteCarloTreeSearch<TicTacToe>> run : runs) {
+            MonteCarloTreeSearch<TicTacToe> a = randomSearch(42L), b = randomSearch(42L), c = randomSearch(43L);
+            run.accept(a);
+            run.accept(b);
+            run.accept(c);
+            assertEquals(tree(a.root()), tree(b.root()));
+            assertNotEquals(tree(a.root()), tree(c.root()));
+        }
+    }
+
+    /**
+     * Test that lazy expansion adds one child per visit, keeping a cursor on the rest,
+     * so that every Node in the tree has been visited, and that there are fewer Nodes than with distinct.
+     */
+    @Test
+    public void testLazyExpansion() {
+        MonteCarloTreeSearch<TicTacToe> search = randomSearch(42L, ExpansionPolicy.lazy(s -> s));
+        Node<TicTacToe> root = search.root();
+        search.run(1);
+        assertEquals(1, root.children().size());
+        assertEquals(8, root.untried().remaining());
+        search.run(8);
+        assertEquals(9, root.children().size());
+        assertNull(root.untried());
+        search.run(2000);
+        assertEquals(2009, root.playouts());
+        List<String> tree = tree(root);
+        assertTrue(tree.size() <= 2010);
+        for (String node : tree) assertFalse(node, node.endsWith(": 0/0"));
+        MonteCarloTreeSearch<TicTacToe> eager = randomSearch(42L, ExpansionPolicy.distinct(s -> s));
+        eager.run(2009);
+        assertTrue(search.transpositions().size() * 3 < eager.transpositions().size() * 2);
+        // root parallelization starts from all the children of the root
+        MonteCarloTreeSearch<TicTacToe> parallel = randomSearch(42L, ExpansionPolicy.lazy(s -> s));
+        parallel.run(100, 3);
+        assertEquals(9, parallel.root().children().size());
+        assertThrows(RuntimeException.class, () -> new NodeArena<TicTacToe>().node(root.state()).untried(null));
+    }
+
+    /**
+     * Test that a search with a NodeBudget stays within it by evicting cold subtrees,
+     * whose statistics are kept by the Nodes at which they were cut off.
+     */
+    @Test
+    public void testNodeBudget() {
+        for (ExpansionPolicy<TicTacToe> expansion : List.of(ExpansionPolicy.<TicTacToe>distinct(s -> s), ExpansionPolicy.<TicTacToe>lazy(s -> s))) {
+            MonteCarloTreeSearch<TicTacToe> search = randomSearch(42L, expansion);
+            search.budget(NodeBudget.nodes(400));
+            Node<TicTacToe> root = search.root();
+            for (int i = 0; i < 20; i++) {
+                search.run(1000);
+                assertTrue(search.transpositions().size() <= 400);
+                // the table holds exactly the Nodes of the tree (other than the root)
+                assertEquals(search.transpositions().size() + 1, tree(root).size());
+            }
+            assertTrue(search.evicted() > 0);
+            assertEquals(20000, root.playouts());
+            int playouts = 0;
+            for (Node<TicTacToe> child : root.children()) playouts += child.playouts();
+            assertEquals(20000, playouts);
+        }
+        assertEquals(750, NodeBudget.bytes(250_000, 250).target());
+        assertThrows(RuntimeException.class, () -> NodeBudget.nodes(1));
+    }
+
+    @Test
+    public void testSearchStats() {
+        MonteCarloTreeSearch<TicTacToe> search = randomSearch(42L, ExpansionPolicy.lazy(s -> s));
+        search.run(100);
+        assertNull(search.stats());
+        search.instrument(true);
+        search.run(1000);
+        SearchStats stats = search.stats();
+        for (SearchStats.Phase phase : List.of(SearchStats.Phase.SELECTION, SearchStats.Phase.ROLLOUT, SearchStats.Phase.EVALUATION, SearchStats.Phase.BACKPROPAGATION)) {
+            assertEquals(1000, stats.calls(phase));
+            assertTrue(stats.nanos(phase) > 0);
+        }
+        // a lazy expansion adds one unvisited child (and any transpositions on the way); terminal positions are not expanded
+        assertTrue(stats.calls(SearchStats.Phase.EXPANSION) > 0 && stats.calls(SearchStats.Phase.EXPANSION) <= 1000);
+        assertTrue(stats.fanOut() >= 1 && stats.fanOut() < 3);
+        assertTrue(stats.rolloutLength() > 0 && stats.rolloutLength() < 9);
+        // the first expansion of a fresh search by distinct adds all nine children of the start
+        MonteCarloTreeSearch<TicTacToe> eager = randomSearch(42L);
+        eager.instrument(true);
+        eager.run(1);
+        assertEquals(9.0, eager.stats().fanOut(), 0.0);
+        eager.runTreeParallel(1000, 4, 1);
+        assertEquals(1000, eager.stats().calls(SearchStats.Phase.BACKPROPAGATION));
+        eager.run(1000, 4);
+        assertEquals(1000, eager.stats().calls(SearchStats.Phase.ROLLOUT));
+        // the rollouts of a batch are timed together
+        eager.runBatched(1000, 4, 1);
+        assertEquals(1000, eager.stats().calls(SearchStats.Phase.SELECTION));
+        assertEquals(250, eager.stats().calls(SearchStats.Phase.ROLLOUT));
+        eager.instrument(false);
+        eager.run(1);
+        assertNull(eager.stats());
+    }
+
+    /**
+     * Method to create a search of TicTacToe with uniformly random rollouts.
+     */
+    private static MonteCarloTreeSearch<TicTacToe> randomSearch(long seed) {
+        return randomSearch(seed, ExpansionPolicy.distinct(s -> s));
+    }
+
+    /**
+     * Method to create a search of TicTacToe with uniformly random rollouts and the given ExpansionPolicy.
+     */
+    private static MonteCarloTreeSearch<TicTacToe> randomSearch(long seed, ExpansionPolicy<TicTacToe> expansion) {
+        return new MonteCarloTreeSearch<>(new TicTacToeNode(new TicTacToe(0L).start()), TicTacToeNode::new,
+                expansion,
+                (s, r) -> {
+                    int[] codes = new int[9];
+                    while (!s.isTerminal()) s = s.nextByCode(codes[r.nextInt(s.generateMoves(s.player(), codes))]);
+                    return s;
+                },
+                (start, end) -> end.winner().map(w -> w == start.game().opener() ? 2 : 0).orElse(1), seed);
+    }
+
+    /**
+     * Method to describe every Node reachable from root (once each): its State and statistics.
+     */
+    private static List<String> tree(Node<TicTacToe> root) {
+        List<String> result = new ArrayList<>();
+        Set<Node<TicTacToe>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node<TicTacToe>> stack = new ArrayDeque<>(List.of(root));
+        while (!stack.isEmpty()) {
+            Node<TicTacToe> node = stack.pop();
+            if (!seen.add(node)) continue;
+            result.add(node.state() + ": " + node.wins() + "/" + node.playouts());
+            stack.addAll(node.children());
+        }
+        return result;
+    }
+
+    /**
+     * Test that rerooting on a grandchild keeps its subtree and statistics, and that an unknown State starts afresh.
+     */
+    @Test
+    public void testReroot() {
+        TicTacToe game = new TicTacToe(0L);
+        TicTacToeNode root = new TicTacToeNode(game.start());
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new, new UCB1<>(),
+                ExpansionPolicy.distinct(s -> s), (s, r) -> s, (start, end) -> 1, new Random(0L));
+        Node<TicTacToe> best = search.run(500);
+        Node<TicTacToe> reply = best.children().stream().max(java.util.Comparator.comparingInt(Node::playouts)).orElseThrow();
+        int playouts = reply.playouts();
+        assertTrue(playouts > 0);
+
+        State<TicTacToe> state = reply.state();
+        assertSame(reply, search.reroot(state));
+        assertSame(reply, search.root());
+        assertEquals(playouts, search.root().playouts());
+        search.run(100);
+        assertEquals(playouts + 100, search.root().playouts());
+
+        Move<TicTacToe> move = state.moves(state.player()).iterator().next();
+        Node<TicTacToe> next = search.advance(move);
+        assertEquals(state.next(move), next.state());
+
+        assertEquals(0, search.reroot(game.start()).playouts());
+    }
+
+    /**
+     * Test that an unvisited child is never preferred to a visited one.
+     */
+    @Test
+    public void testBestChild() {
+        TicTacToe game = new TicTacToe(0L);
+        TicTacToeNode root = new TicTacToeNode(game.start());
+        root.addChild(game.start());
+        root.addChild(game.start());
+        Node<TicTacToe> visited = root.children().stream().skip(1).findFirst().orElseThrow();
+        visited.increment(-5);
+        MonteCarloTreeSearch<TicTacToe> search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new,
+                ExpansionPolicy.distinct(s -> s), (s, r) -> s, (start, end) -> 0);
+        assertSame(visited, search.bestChild(root));
+    }
+}
@@ -0,0 +1,104 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class NodeArenaTest {
+
+    /**
+     * Test that children and statistics are held by the arena and that reset reuses the same ids (and handles).
+     */
+    @Test
+    public void testNodes() {
+        NodeArena<TicTacToe> arena = new NodeArena<>(2);
+        State<TicTacToe> start = new TicTacToe(0L).start();
+        Node<TicTacToe> root = arena.node(start);
+        root.explore();
+        assertEquals(10, arena.size());
+        assertEquals(9, arena.edges());
+        assertEquals(9, root.children().size());
+        assertTrue(arena.capacity() >= 10);
+        Node<TicTacToe> child = root.children().iterator().next();
+        assertSame(child, root.children().iterator().next());
+        child.increment(2);
+        child.increment(3, 4);
+        assertEquals(5, child.wins());
+        assertEquals(5, child.playouts());
+        root.backPropagate();
+        assertEquals(5, root.wins());
+        assertEquals(5, root.playouts());
+        arena.reset();
+        assertEquals(0, arena.size());
+        assertSame(root, arena.node(start));
+        assertEquals(0, root.playouts());
+        assertTrue(root.children().isEmpty());
+    }
+
+    /**
+     * Test that a terminal State starts with one playout, like the Nodes of the games.
+     */
+    @Test
+    public void testTerminal() {
+        State<TicTacToe> state = new TicTacToe(0L).start();
+        while (!state.isTerminal()) state = state.next(state.chooseMove(state.player()));
+        Node<TicTacToe> node = new NodeArena<TicTacToe>().node(state);
+        TicTacToeNode expected = new TicTacToeNode(state);
+        assertEquals(expected.wins(), node.wins());
+        assertEquals(expected.playouts(), node.playouts());
+    }
+
+    /**
+     * Test that the children of a node must be added together and only from the same arena.
+     */
+    @Test
+    public void testAddChild() {
+        NodeArena<TicTacToe> arena = new NodeArena<>();
+        State<TicTacToe> start = new TicTacToe(0L).start();
+        Node<TicTacToe> a = arena.node(start);
+        Node<TicTacToe> b = arena.node(start);
+        a.addChild(b);
+        b.addChild(start);
+        assertThrows(RuntimeException.class, () -> a.addChild(start));
+        assertThrows(RuntimeException.class, () -> b.addChild(new TicTacToeNode(start)));
+        assertThrows(RuntimeException.class, () -> b.addChild(new NodeArena<TicTacToe>().node(start)));
+    }
+
+    /**
+     * Test that a search gives the same tree with the arena as with the TicTacToe Nodes (transpositions included).
+     */
+    @Test
+    public void testSearch() {
+        NodeArena<TicTacToe> arena = new NodeArena<>();
+        State<TicTacToe> start = new TicTacToe(0L).start();
+        Node<TicTacToe> arenaRoot = arena.node(start);
+        Node<TicTacToe> nodeRoot = new TicTacToeNode(start);
+        search(arenaRoot, arena::node).run(500);
+        search(nodeRoot, TicTacToeNode::new).run(500);
+        assertEquals(nodeRoot.playouts(), arenaRoot.playouts());
+        assertEquals(nodeRoot.wins(), arenaRoot.wins());
+        Iterator<Node<TicTacToe>> expected = nodeRoot.children().iterator();
+        for (Node<TicTacToe> child : arenaRoot.children()) {
+            Node<TicTacToe> other = expected.next();
+            assertEquals(other.state(), child.state());
+            assertEquals(other.playouts(), child.playouts());
+        }
+        assertFalse(expected.hasNext());
+    }
+
+    private static MonteCarloTreeSearch<TicTacToe> search(Node<TicTacToe> root, java.util.function.Function<State<TicTacToe>, Node<TicTacToe>> nodes) {
+        return new MonteCarloTreeSearch<>(root, nodes, new UCB1<>(), ExpansionPolicy.distinct(s -> s),
+                (s, r) -> {
+                    while (!s.isTerminal()) {
+                        List<Move<TicTacToe>> moves = new ArrayList<>(s.moves(s.player()));
+                        s = s.next(moves.get(r.nextInt(moves.size())));
+                    }
+                    return s;
+                },
+                (from, to) -> to.winner().map(w -> w == from.game().opener() ? 2 : 0).orElse(1), new Random(0L));
+    }
+}
@@ -0,0 +1,146 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToeNode;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class OffHeapNodeStoreTest {
+
+    /**
+     * Test that children, statistics and States are held by the store, across more than one chunk, and that reset empties it.
+     */
+    @Test
+    public void testNodes() {
+        TicTacToe game = new TicTacToe(0L);
+        OffHeapNodeStore<TicTacToe> store = new OffHeapNodeStore<>(game.codec());
+        State<TicTacToe> start = game.start();
+        Node<TicTacToe> first = store.node(start);
+        for (int i = 1; i < 70000; i++) store.node(start); // fill the first chunk
+        Node<TicTacToe> root = store.node(start);
+        root.explore();
+        assertEquals(70010, store.size());
+        assertEquals(2 * 24L << 16, store.bytes());
+        Node<TicTacToe> child = root.children().iterator().next();
+        // handles on the same node are equal
+        assertEquals(child, root.children().iterator().next());
+        assertEquals(root.children(), root.children());
+        assertFalse(child.isLeaf());
+        assertNotEquals(root, child);
+        assertEquals(start.next(start.moves(start.player()).iterator().next()).player(), child.state().player());
+        child.increment(2);
+        child.increment(3, 4);
+        assertEquals(5, child.wins());
+        assertEquals(5, child.playouts());
+        root.backPropagate();
+        assertEquals(5, root.wins());
+        assertEquals(5, root.playouts());
+        store.reset();
+        assertEquals(0, store.size());
+        assertEquals(2 * 24L << 16, store.bytes());
+        Node<TicTacToe> node = store.node(start);
+        assertEquals(first, node); // ids are reused
+        assertEquals(start, node.state());
+        assertEquals(0, node.playouts());
+        assertTrue(node.children().isEmpty());
+    }
+
+    /**
+     * Test that the children of a node must be added together and that Nodes cannot be shared.
+     */
+    @Test
+    public void testAddChild() {
+        TicTacToe game = new TicTacToe(0L);
+        OffHeapNodeStore<TicTacToe> store = new OffHeapNodeStore<>(game.codec());
+        State<TicTacToe> start = game.start();
+        Node<TicTacToe> a = store.node(start);
+        Node<TicTacToe> b = store.node(start);
+        a.addChild(start);
+        b.addChild(start);
+        assertThrows(RuntimeException.class, () -> a.addChild(start));
+        assertThrows(RuntimeException.class, () -> b.addChild(store.node(start)));
+    }
+
+    /**
+     * Test that a store cannot be used by a second thread until it is reset.
+     */
+    @Test
+    public void testSingleThreaded() throws InterruptedException {
+        TicTacToe game = new TicTacToe(0L);
+        OffHeapNodeStore<TicTacToe> store = new OffHeapNodeStore<>(game.codec());
+        State<TicTacToe> start = game.start();
+        Node<TicTacToe> root = store.node(start);
+        RuntimeException[] thrown = new RuntimeException[2];
+        Thread other = new Thread(() -> {
+            try {
+                store.node(start);
+            } catch (RuntimeException e) {
+                thrown[0] = e;
+            }
+            try {
+                root.addChild(start);
+            } catch (RuntimeException e) {
+                thrown[1] = e;
+            }
+        });
+        other.start();
+        other.join();
+        assertNotNull(thrown[0]);
+        assertNotNull(thrown[1]);
+        assertEquals(1, store.size());
+        store.reset();
+        other = new Thread(() -> store.node(start));
+        other.start();
+        other.join();
+        assertEquals(1, store.size());
+    }
+
+    /**
+     * Test that a search (with ExpansionPolicy.unshared) gives the same tree off the heap as with the TicTacToe Nodes,
+     * and that the policies which share Nodes cannot be used.
+     */
+    @Test
+    public void testSearch() {
+        TicTacToe game = new TicTacToe(0L);
+        OffHeapNodeStore<TicTacToe> store = new OffHeapNodeStore<>(game.codec());
+        State<TicTacToe> start = game.start();
+        Node<TicTacToe> storeRoot = store.node(start);
+        Node<TicTacToe> nodeRoot = new TicTacToeNode(start);
+        search(storeRoot, store::node).run(500);
+        search(nodeRoot, TicTacToeNode::new).run(500);
+        assertEquals(nodeRoot.playouts(), storeRoot.playouts());
+        assertEquals(nodeRoot.wins(), storeRoot.wins());
+        Iterator<Node<TicTacToe>> expected = nodeRoot.children().iterator();
+        for (Node<TicTacToe> child : storeRoot.children()) {
+            Node<TicTacToe> other = expected.next();
+            assertEquals(other.state(), child.state());
+            assertEquals(other.playouts(), child.playouts());
+        }
+        assertFalse(expected.hasNext());
+        store.reset();
+        assertThrows(RuntimeException.class, () -> search(store.node(start), store::node, ExpansionPolicy.distinct(s -> s)).run(10));
+        store.reset();
+        assertThrows(RuntimeException.class, () -> search(store.node(start), store::node, ExpansionPolicy.lazy(s -> s)).run(10));
+    }
+
+    private static MonteCarloTreeSearch<TicTacToe> search(Node<TicTacToe> root, Function<State<TicTacToe>, Node<TicTacToe>> nodes) {
+        return search(root, nodes, ExpansionPolicy.unshared());
+    }
+
+    private static MonteCarloTreeSearch<TicTacToe> search(Node<TicTacToe> root, Function<State<TicTacToe>, Node<TicTacToe>> nodes, ExpansionPolicy<TicTacToe> expansion) {
+        return new MonteCarloTreeSearch<>(root, nodes, new UCB1<>(),
+                expansion,
+                (s, r) -> {
+                    while (!s.isTerminal()) {
+                        List<Move<TicTacToe>> moves = new ArrayList<>(s.moves(s.player()));
+                        s = s.next(moves.get(r.nextInt(moves.size())));
+                    }
+                    return s;
+                },
+                (from, to) -> to.winner().map(w -> w == from.game().opener() ? 2 : 0).orElse(1), new Random(0L));
+    }
+}
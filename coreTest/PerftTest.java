@@ -0,0 +1,48 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PerftTest {
+
+    /**
+     * Test the counts of TicTacToe against the known numbers of positions and games.
+     */
+    @Test
+    public void testTicTacToe() {
+        State<TicTacToe> start = new TicTacToe(0L).start();
+        long[] leaves = {1, 9, 72, 504, 3024, 15120};
+        for (int depth = 0; depth < leaves.length; depth++) assertEquals(leaves[depth], Perft.count(start, depth).leaves());
+        // the first wins are at depth 5
+        assertEquals(1440, Perft.count(start, 5).wins());
+        Perft.Count all = Perft.count(start, 9);
+        assertEquals(255168, all.leaves());
+        assertEquals(131184 + 77904, all.wins());
+        assertEquals(46080, all.draws());
+        assertEquals(549946, all.nodes());
+        assertEquals(all, Perft.count(start, 20));
+    }
+
+    /**
+     * Test that the parallel walk gives the same counts as the sequential one, for both games.
+     */
+    @Test
+    public void testParallel() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            State<TicTacToe> start = new TicTacToe(0L).start();
+            for (int depth = 0; depth <= 9; depth++) assertEquals(Perft.count(start, depth), Perft.count(start, depth, pool));
+            State<ExtendableTicTacToe> extendable = new ExtendableTicTacToe().start();
+            // 9 cells and 8 extensions
+            assertEquals(17, Perft.count(extendable, 1).leaves());
+            assertEquals(Perft.count(extendable, 3), Perft.count(extendable, 3, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
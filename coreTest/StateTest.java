@@ -0,0 +1,61 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StateTest {
+
+    /**
+     * Test the default move codes (indexes into moves) through a State which only implements moves and next.
+     */
+    @Test
+    public void testDefaultMoveCodes() {
+        State<TicTacToe> start = new TicTacToe(0L).start();
+        State<TicTacToe> target = new Plain(start);
+        int[] codes = new int[4];
+        assertEquals(9, target.generateMoves(target.player(), codes));
+        assertEquals(target.player() << 16 | 3, codes[3]);
+        codes = new int[9];
+        assertEquals(9, target.generateMoves(target.player(), codes));
+        Iterator<Move<TicTacToe>> moves = start.moves(start.player()).iterator();
+        for (int code : codes) assertEquals(start.next(moves.next()), target.nextByCode(code));
+        assertThrows(RuntimeException.class, () -> target.nextByCode(target.player() << 16 | 9));
+    }
+
+    /**
+     * A State which delegates to another but does not override generateMoves or nextByCode.
+     */
+    private record Plain(State<TicTacToe> state) implements State<TicTacToe> {
+        public TicTacToe game() {
+            return state.game();
+        }
+
+        public boolean isTerminal() {
+            return state.isTerminal();
+        }
+
+        public int player() {
+            return state.player();
+        }
+
+        public Optional<Integer> winner() {
+            return state.winner();
+        }
+
+        public Random random() {
+            return state.random();
+        }
+
+        public Collection<Move<TicTacToe>> moves(int player) {
+            return state.moves(player);
+        }
+
+        public State<TicTacToe> next(Move<TicTacToe> move) {
+            return state.next(move);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.TicTacToe;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class TournamentTest {
+
+    /**
+     * Test a match between two engines which always play the first move:
+     * every game is won by the first player (on the diagonal, at the seventh move), who alternates between A and B.
+     */
+    @Test
+    public void testFirstMoves() {
+        Tournament<TicTacToe> tournament = new Tournament<>(() -> new TicTacToe(0L).start(), TournamentTest::firstMove, TournamentTest::firstMove, 0L);
+        Tournament.Result result = tournament.play(10, 3);
+        assertEquals(5, result.wins());
+        assertEquals(0, result.draws());
+        assertEquals(5, result.losses());
+        assertEquals(10, result.games());
+        assertEquals(35, result.decisionsA());
+        assertEquals(35, result.decisionsB());
+        assertEquals(0.5, result.score(), 1E-9);
+        assertEquals(0.0, result.elo(), 1E-9);
+        assertTrue(result.gamesPerSecond() > 0);
+        double[] interval = result.scoreInterval();
+        assertEquals(0.5 - 1.96 * Math.sqrt(0.25 / 10), interval[0], 1E-9);
+    }
+
+    /**
+     * Test that a match of no games has zero rates and empty intervals (rather than NaN).
+     */
+    @Test
+    public void testNoGames() {
+        Tournament<TicTacToe> tournament = new Tournament<>(() -> new TicTacToe(0L).start(), TournamentTest::firstMove, TournamentTest::firstMove, 0L);
+        Tournament.Result result = tournament.play(0, 2);
+        assertEquals(0, result.games());
+        assertEquals(0.0, result.gamesPerSecond(), 0.0);
+        assertEquals(0.0, result.score(), 0.0);
+        assertArrayEquals(new double[]{0, 0}, result.scoreInterval(), 0.0);
+        assertEquals(0.0, result.elo(), 0.0);
+        assertArrayEquals(new double[]{0, 0}, result.eloInterval(), 0.0);
+        assertFalse(result.toString(), result.toString().contains("NaN"));
+    }
+
+    /**
+     * Test that a match won by A in every game has a finite Elo (that of a score half a game short of all the points).
+     */
+    @Test
+    public void testWhitewash() {
+        Tournament<TicTacToe> tournament = new Tournament<>(() -> new TicTacToe(0L).start(), TournamentTest::firstMove, TournamentTest::firstMove, 0L);
+        // A opens the first game of each match, and the opener wins
+        Tournament.Result result = tournament.play(1, 1);
+        for (int i = 1; i < 10; i++) result.add(tournament.play(1, 1));
+        assertEquals(10, result.wins());
+        assertEquals(1.0, result.score(), 0.0);
+        assertEquals(400 * Math.log10(19), result.elo(), 1E-9);
+        for (double bound : result.eloInterval()) assertTrue(Double.isFinite(bound));
+        assertFalse(result.toString(), result.toString().contains("Infinity"));
+    }
+
+    /**
+     * Test that a match between random engines has the same result however many threads play it.
+     */
+    @Test
+    public void testReproducible() {
+        Tournament<TicTacToe> tournament = new Tournament<>(() -> new TicTacToe(0L).start(), TournamentTest::randomMove, TournamentTest::randomMove, 42L);
+        Tournament.Result result = tournament.play(200, 1);
+        Tournament.Result parallel = tournament.play(200, 4);
+        assertEquals(result.wins(), parallel.wins());
+        assertEquals(result.draws(), parallel.draws());
+        assertEquals(result.losses(), parallel.losses());
+        assertEquals(result.decisionsA(), parallel.decisionsA());
+        assertEquals(200, result.games());
+        assertTrue(result.wins() > 0 && result.draws() > 0 && result.losses() > 0);
+    }
+
+    /**
+     * Test that a sequential test stops a match between equal engines by accepting H0,
+     * at the same game however many threads play it, reporting each game in order as it goes.
+     */
+    @Test
+    public void testSprtEqual() {
+        Tournament<TicTacToe> tournament = new Tournament<>(() -> new TicTacToe(0L).start(), TournamentTest::randomMove, TournamentTest::randomMove, 42L);
+        Sprt sprt = new Sprt(0, 100);
+        List<Integer> games = new ArrayList<>();
+        Tournament.Result result = tournament.play(5000, 1, sprt, progress -> games.add(progress.games()));
+        assertEquals(Optional.of(Sprt.Hypothesis.H0), sprt.decide(result));
+        assertTrue(result.games() < 5000);
+        assertEquals(result.games(), games.size());
+        for (int i = 0; i < games.size(); i++) assertEquals(i + 1, (int) games.get(i));
+        assertTrue(sprt.llr(result) <= sprt.lower());
+        assertEquals(result.games(), tournament.play(5000, 4, sprt, null).games());
+    }
+
+    /**
+     * Test that a sequential test stops a match between a stronger and a weaker engine by accepting H1.
+     */
+    @Test
+    public void testSprtStronger() {
+        Tournament<TicTacToe> tournament = new Tournament<>(() -> new TicTacToe(0L).start(), TournamentTest::winningMove, TournamentTest::randomMove, 42L);
+        Sprt sprt = new Sprt(0, 50, 0.05, 0.05);
+        Tournament.Result result = tournament.play(5000, 2, sprt, null);
+        assertEquals(Optional.of(Sprt.Hypothesis.H1), sprt.decide(result));
+        assertTrue(result.games() < 5000);
+        assertTrue(result.elo() > 50);
+        assertEquals(Math.log(19), sprt.upper(), 1E-9);
+        assertEquals(-Math.log(19), sprt.lower(), 1E-9);
+        assertThrows(RuntimeException.class, () -> new Sprt(10, 0));
+    }
+
+    /**
+     * Test that a match fails if an engine makes an illegal move (here, two moves at once).
+     */
+    @Test
+    public void testIllegalMove() {
+        Tournament<TicTacToe> tournament = new Tournament<>(() -> new TicTacToe(0L).start(), TournamentTest::randomMove, TournamentTest::doubleMove, 42L);
+        RuntimeException e = assertThrows(RuntimeException.class, () -> tournament.play(10, 2));
+        assertTrue(e.getCause().getMessage().contains("engine B made an illegal move"));
+    }
+
+    /**
+     * Test that a sequential test does not decide on games with illegal moves: the match fails instead.
+     */
+    @Test
+    public void testSprtIllegalMove() {
+        Tournament<TicTacToe> tournament = new Tournament<>(() -> new TicTacToe(0L).start(), TournamentTest::doubleMove, TournamentTest::randomMove, 42L);
+        List<Tournament.Result> progress = new ArrayList<>();
+        assertThrows(RuntimeException.class, () -> tournament.play(5000, 2, new Sprt(0, 50), progress::add));
+        assertTrue(progress.isEmpty());
+    }
+
+    /**
+     * Test the Wilson interval against known values.
+     */
+    @Test
+    public void testWilson() {
+        double[] interval = Tournament.Result.wilson(5, 10);
+        assertEquals(0.2366, interval[0], 1E-4);
+        assertEquals(0.7634, interval[1], 1E-4);
+        interval = Tournament.Result.wilson(0, 10);
+        assertEquals(0.0, interval[0], 1E-9);
+        assertEquals(0.2775, interval[1], 1E-4);
+    }
+
+    private static Tournament.Engine<TicTacToe> firstMove(int player, boolean first, long seed) {
+        int[] codes = new int[9];
+        return state -> {
+            assertEquals(player, state.player());
+            state.generateMoves(player, codes);
+            return state.nextByCode(codes[0]);
+        };
+    }
+
+    /**
+     * An engine which wins at once if it can and otherwise moves at random.
+     */
+    private static Tournament.Engine<TicTacToe> winningMove(int player, boolean first, long seed) {
+        Tournament.Engine<TicTacToe> random = randomMove(player, first, seed);
+        int[] codes = new int[9];
+        return state -> {
+            int n = state.generateMoves(player, codes);
+            for (int i = 0; i < n; i++) {
+                State<TicTacToe> next = state.nextByCode(codes[i]);
+                if (next.winner().isPresent()) return next;
+            }
+            return random.move(state);
+        };
+    }
+
+    /**
+     * An engine which cheats by making a move for each player (if it can).
+     */
+    private static Tournament.Engine<TicTacToe> doubleMove(int player, boolean first, long seed) {
+        Tournament.Engine<TicTacToe> random = randomMove(player, first, seed);
+        return state -> {
+            State<TicTacToe> next = random.move(state);
+            return next.isTerminal() ? next : next.successors().get(0);
+        };
+    }
+
+    private static Tournament.Engine<TicTacToe> randomMove(int player, boolean first, long seed) {
+        FastRandom random = new FastRandom(seed);
+        int[] codes = new int[9];
+        return state -> state.nextByCode(codes[random.nextInt(state.generateMoves(player, codes))]);
+    }
+}
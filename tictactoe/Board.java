@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
+
+/**
+ * Class to represent a mutable TicTacToe board, on which moves are made and unmade in place.
+ * <p>
+ * A Board is a scratch pad for rollouts and look-ahead: where each move on a Position creates a new Position
+ * (and a new State to hold it), a move on a Board only sets a bit, and unmake takes it back.
+ * The Nodes of a search keep their immutable States: load a Board from a Position, play on it,
+ * and make a Position (position()) only of the board that is kept.
+ * <p>
+ * Moves are the codes of TicTacToeState.generateMoves: player << 8 plus the cell (i * 3 + j).
+ * NOTE: a Board is not thread-safe: each thread needs its own.
+ */
+class Board {
+
+    /**
+     * Method to set this Board to position (forgetting any moves which have not been unmade).
+     *
+     * @param position a Position.
+     */
+    void load(Position position) {
+        int encoded = position.encode();
+        noughts = encoded & all;
+        crosses = encoded >> cells & all;
+        count = encoded >> 2 * cells & 15;
+        last = (encoded >> 2 * cells + 4) - 1;
+        depth = 0;
+    }
+
+    /**
+     * @return a new Position equal to this Board.
+     */
+    Position position() {
+        return Position.decode(crosses << cells | noughts | count << 2 * cells | (last + 1) << 2 * cells + 4);
+    }
+
+    /**
+     * Method to make a move on this Board.
+     * NOTE: for speed, the move is not checked (use codes from moves).
+     *
+     * @param code the code of the move.
+     */
+    void make(int code) {
+        int player = code >> 8;
+        int bit = 1 << (code & 0xFF);
+        history[depth++] = code | (last + 1) << 16;
+        if (player == 0) noughts |= bit;
+        else crosses |= bit;
+        last = player;
+        count++;
+    }
+
+    /**
+     * Method to take back the last move which was made (and not yet unmade).
+     */
+    void unmake() {
+        int entry = history[--depth];
+        int bit = ~(1 << (entry & 0xFF));
+        noughts &= bit;
+        crosses &= bit;
+        last = (entry >> 16) - 1;
+        count--;
+    }
+
+    /**
+     * Method to write the codes of all the possible moves on this Board into buffer,
+     * in the same order as TicTacToeState.generateMoves.
+     *
+     * @param player the player to move.
+     * @param buffer the array into which to write the codes (at least 9 long).
+     * @return the number of moves.
+     */
+    int moves(int player, int[] buffer) {
+        if (player == last) throw new RuntimeException("consecutive moves by same player: " + player);
+        int n = 0;
+        for (int empty = ~(noughts | crosses) & all; empty != 0; empty &= empty - 1)
+            buffer[n++] = player << 8 | Integer.numberOfTrailingZeros(empty);
+        return n;
+    }
+
+    /**
+     * @return the winner (the last player, if they have three in a row), or -1 if there is none (cf. Position.winner).
+     */
+    int winner() {
+        return count > 4 && Position.threeInARow(last == 0 ? noughts : crosses) ? last : -1;
+    }
+
+    /**
+     * @return true if the game is over (cf. TicTacToeState.isTerminal).
+     */
+    boolean isTerminal() {
+        return count == cells || winner() >= 0;
+    }
+
+    /**
+     * @param player a player.
+     * @return true if player has two in a line whose third cell is empty (cf. MCTS.twoInARowThreatCheck).
+     */
+    boolean twoInARow(int player) {
+        return player == 0 ? Position.twoInARow(noughts, crosses) : Position.twoInARow(crosses, noughts);
+    }
+
+    /**
+     * @return the canonical code of this Board (see Position.canonical).
+     */
+    int canonical() {
+        return Position.canonical(noughts, crosses);
+    }
+
+    private static final int cells = 9;
+    private static final int all = (1 << cells) - 1;
+
+    private int noughts;
+    private int crosses;
+    private int last;
+    private int count;
+    // for each move made and not unmade: its code, with last + 1 (before the move) in bits 16 and up
+    private final int[] history = new int[cells];
+    private int depth;
+}
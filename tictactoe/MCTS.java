@@ -4,12 +4,16 @@
 
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ExpansionPolicy;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.FastRandom;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.MonteCarloTreeSearch;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
 
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 
 
+import java.time.Duration;
 import java.util.*;
 import java.util.Scanner;
 
@@ -19,14 +23,17 @@ import java.util.Scanner;
  */
 public class MCTS {
 	
-    private final Node<TicTacToe> root;
+    private final MonteCarloTreeSearch<TicTacToe> search;
 
-    private final Set<Position> expandedPositions;
-    private final Random random = new Random();
-    
     private final boolean isHumanFirst;
     
     private final int mctsPlayer;
+    
+    // provisional loss for paths being searched by other threads (about the value of a lost game)
+    private static final int VIRTUAL_LOSS = 100;
+
+    // the scratch Board and move buffers of the rollouts on each thread (see rollout)
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
 
 //    public static void main(String[] args) {
 //        MCTS mcts = new MCTS(new TicTacToeNode(new TicTacToe().new TicTacToeState()));
@@ -59,6 +66,7 @@ public class MCTS {
             // MCTS will go first automatically in the loop
         }
 
+        MCTS mcts = null; // kept from move to move so that the subtree under the human's reply is reused
         while (!state.isTerminal()) {
             System.out.println("Current board:");
             System.out.println(state);
@@ -66,11 +74,13 @@ public class MCTS {
             if (state.player() == game.opener()) {
                 // MCTS's turn
 //                MCTS mcts = new MCTS(new TicTacToeNode(state));
-            	MCTS mcts = new MCTS(new TicTacToeNode(state), isHumanFirst);
+            	if (mcts == null) mcts = new MCTS(new TicTacToeNode(state), isHumanFirst);
+            	else mcts.reroot(state);
             	
             	long startTime = System.currentTimeMillis(); // stop watch
             	
-                Node<TicTacToe> bestChild = mcts.run(50000); // run 20000 simulations
+                // run 50000 simulations on all cores, sharing one tree (so that it can be reused next move)
+                Node<TicTacToe> bestChild = mcts.search().runTreeParallel(50000, Runtime.getRuntime().availableProcessors(), VIRTUAL_LOSS);
                 
              // End timing
                 long endTime = System.currentTimeMillis();
@@ -98,178 +108,167 @@ public class MCTS {
         }
     }
 
+    /*
+     * player: the player for whom the search plays (and from whose point of view it scores positions)
+     * seed: the seed of the search (the same seed gives the same search, see MonteCarloTreeSearch)
+     */
+    public MCTS(Node<TicTacToe> root, int player, boolean isHumanFirst, long seed) {
+        this.isHumanFirst = isHumanFirst;
+        this.mctsPlayer = player;
+        // Positions are keyed by the canonical code of their normalized form, so symmetric or transposed positions share one node;
+        // children are added one at a time, as they are reached
+        this.search = new MonteCarloTreeSearch<>(root, TicTacToeNode::new,
+                ExpansionPolicy.lazy(s -> ((TicTacToe.TicTacToeState) s).position().canonical()),
+                this::rollout, this::score, seed);
+    }
+
+    /*
+     * the search plays for the opener
+     */
+    public MCTS(Node<TicTacToe> root, boolean isHumanFirst, long seed) {
+        this(root, root.state().game().opener(), isHumanFirst, seed);
+    }
+
     public MCTS(Node<TicTacToe> root, boolean isHumanFirst) {
-        this.root = root;
-        this.expandedPositions = new HashSet<>();
-        this.isHumanFirst = isHumanFirst; // Store already expanded board positions(prevent using duplicate symmetries)
-        
-        this.mctsPlayer = root.state().game().opener();
+        this(root, isHumanFirst, new FastRandom().nextLong());
     }
     
     /*
-     * run simulations(100 times) and return best child node
+     * run simulations and return best child node
      */
     public Node<TicTacToe> run(int iterations) {
-    	expandedPositions.clear();
-        for (int i = 0; i < iterations; i++) {
-            simulate(root);
-        }
-        return bestChild(root);
+        return search.run(iterations);
     }
     
     /*
-     * 4 phase each simulation:
-     *  Selection -> Expansion -> Rollout -> Back propagation
-     *  Selection: use ucb1 function to pick best node
-     *  Expansion: expand possible moves
-     *  Rollout: move randomly up to 4 steps ahead
-     *  Back propagation: give scores back up to parent node
+     * run as many simulations as fit into budget and return best child node
      */
-    private void simulate(Node<TicTacToe> node) {
-        List<Node<TicTacToe>> path = new ArrayList<>();
-        
-        path.add(node);
-        
-        Node<TicTacToe> current = node;
-
-        while (!current.isLeaf() && !current.children().isEmpty()) {
-            current = select(current);
-            path.add(current);
-        }
-
-        if (!current.state().isTerminal()) {
-            expand(current);
-            if (!current.children().isEmpty()) {
-                current = select(current);
-                path.add(current);
-            }
-        }
-
-        int result = rollout(current.state(), current);
-
-        for (Node<TicTacToe> nodeInPath : path) {
-            update(nodeInPath, result);
-        }
+    public Node<TicTacToe> run(Duration budget) {
+        return search.run(budget);
     }
     
     /*
-     * select best score by using ucb1 function.
+     * run simulations on several threads (one search tree per thread) and return best child node
      */
-    private Node<TicTacToe> select(Node<TicTacToe> node) {
-        double logParent = Math.log(Math.max(1, node.playouts()));
-        return node.children().stream()
-                .max(Comparator.comparing(c -> ucb1(c, logParent)))
-                .orElseThrow();
+    public Node<TicTacToe> run(int iterations, int threads) {
+        return search.run(iterations, threads);
     }
     
     /*
-     * ucb1 function
+     * move the root of the search to state, keeping the statistics of the matching subtree (if any)
      */
-    private double ucb1(Node<TicTacToe> node, double logParentPlayouts) {
-        if (node.playouts() == 0) return Double.MAX_VALUE; // if node is not visited, assign large value to prioritize.
-        return (double) node.wins() / node.playouts() + Math.sqrt(2 * logParentPlayouts / node.playouts());
+    public void reroot(State<TicTacToe> state) {
+        search.reroot(state);
     }
-
+    
     /*
-     * expand possibilities from current board, normalize(check for symmetric), expand only identical board.
+     * the underlying search engine (e.g. for tree-parallel search)
      */
-    private void expand(Node<TicTacToe> node) {
-        int currentPlayer = node.state().player();
-
-        for (Move<TicTacToe> move : node.state().moves(currentPlayer)) {
-            State<TicTacToe> nextState = node.state().next(move);
-            Position normalized = ((TicTacToe.TicTacToeState) nextState).position().normalize();
-            if (!expandedPositions.contains(normalized)) {
-                node.addChild(nextState);
-                expandedPositions.add(normalized);
-            }
-        }
+    public MonteCarloTreeSearch<TicTacToe> search() {
+        return search;
     }
     
-    
     /*
      * 5 random moves
+     * The moves (and the look-ahead for each candidate) are made and unmade on this thread's scratch Board,
+     * so only the final state is allocated.
+     * It is public so that it can be benchmarked (see TicTacToeBenchmark).
      */
-    private int rollout(State<TicTacToe> state, Node<TicTacToe> parentNode) {
-        State<TicTacToe> rolloutState = state;
-        int player = rolloutState.player();
+    public State<TicTacToe> rollout(State<TicTacToe> state, Random random) {
+        Scratch scratch = this.scratch.get();
+        Board board = scratch.board;
+        board.load(((TicTacToe.TicTacToeState) state).position());
+        int player = state.player();
         int depth = 0;
 
-        Set<Position> visited = new HashSet<>();
-        visited.add(((TicTacToe.TicTacToeState) rolloutState).position().normalize());
-
-        while (!rolloutState.isTerminal() && depth < 5) { // evaluate final board after 4 moves or game end
-            List<Move<TicTacToe>> moves = new ArrayList<>(rolloutState.moves(player));
-            List<Move<TicTacToe>> filteredMoves = new ArrayList<>();
-
-            for (Move<TicTacToe> move : moves) {
-                State<TicTacToe> potentialState = rolloutState.next(move);
-                Position normalized = ((TicTacToe.TicTacToeState) potentialState).position().normalize();
-                if (!visited.contains(normalized)) {
-                    filteredMoves.add(move);
+        // canonical codes of the positions seen in this rollout (the start plus at most 5 moves)
+        int[] visited = scratch.visited;
+        int seen = 0;
+        visited[seen++] = board.canonical();
+
+        // the codes of the moves (see State.generateMoves)
+        int[] moves = scratch.moves, filteredMoves = scratch.filteredMoves, oppMoves = scratch.oppMoves;
+        while (!board.isTerminal() && depth < 5) { // evaluate final board after 4 moves or game end
+            int n = board.moves(player, moves);
+            int filtered = 0;
+
+            for (int k = 0; k < n; k++) {
+                board.make(moves[k]);
+                if (!contains(visited, seen, board.canonical())) {
+                    filteredMoves[filtered++] = moves[k];
                 }
+                board.unmake();
             }
 
-            if (filteredMoves.isEmpty()) {
+            if (filtered == 0) {
                 break;
             }
             
-            Move<TicTacToe> bestMove = null;
+            int bestMove = -1;
             // Check if current player can win immediately
-            for (Move<TicTacToe> move : filteredMoves) {
-                State<TicTacToe> potentialState = rolloutState.next(move);
-                if (potentialState.winner().isPresent() && potentialState.winner().get() == player) {
-                    bestMove = move;
-                    break;
+            for (int k = 0; k < filtered && bestMove < 0; k++) {
+                board.make(filteredMoves[k]);
+                if (board.winner() == player) {
+                    bestMove = filteredMoves[k];
                 }
+                board.unmake();
             }
             
             // Check if human will immediately win after MCTS play this move, if yes MCTS will not choose it.
-            if (bestMove == null) {
-                int opponent = 1 - player;
-                for (Move<TicTacToe> move : filteredMoves) {
-                    State<TicTacToe> potentialState = rolloutState.next(move);
-                    for (Move<TicTacToe> oppMove : potentialState.moves(opponent)) {
-                        State<TicTacToe> oppNextState = potentialState.next(oppMove);
-                        if (oppNextState.winner().isPresent() && oppNextState.winner().get() == opponent) {
-                            bestMove = move; // blocks opponent
-                            break;
-                        }
+            int opponent = 1 - player;
+            for (int k = 0; k < filtered && bestMove < 0; k++) {
+                board.make(filteredMoves[k]);
+                int m = board.moves(opponent, oppMoves);
+                for (int o = 0; o < m && bestMove < 0; o++) {
+                    board.make(oppMoves[o]);
+                    if (board.winner() == opponent) {
+                        bestMove = filteredMoves[k]; // blocks opponent
                     }
-                    if (bestMove != null) break;
+                    board.unmake();
                 }
+                board.unmake();
             }
             
             // Check if opponent have 2 in a row already and will win soon
-            if (bestMove == null) {
-                int opponent = 1 - player;
-                for (Move<TicTacToe> move : filteredMoves) {
-                    State<TicTacToe> potentialState = rolloutState.next(move);
-                    Position pos = ((TicTacToe.TicTacToeState) potentialState).position();
-                    if (twoInARowThreatCheck(pos, opponent)) {
-                        bestMove = move; // block the threat
-                        break;
-                    }
+            for (int k = 0; k < filtered && bestMove < 0; k++) {
+                board.make(filteredMoves[k]);
+                if (board.twoInARow(opponent)) {
+                    bestMove = filteredMoves[k]; // block the threat
                 }
+                board.unmake();
             }
             
             
             // if 3 previous situations are not met, explore randomly
-            if (bestMove == null) {
-                bestMove = filteredMoves.get(random.nextInt(filteredMoves.size()));
+            if (bestMove < 0) {
+                bestMove = filteredMoves[random.nextInt(filtered)];
             }       
 
-//            Move move = filteredMoves.get(random.nextInt(filteredMoves.size()));
-            rolloutState = rolloutState.next(bestMove);
-            visited.add(((TicTacToe.TicTacToeState) rolloutState).position().normalize());
+            board.make(bestMove);
+            visited[seen++] = board.canonical();
             player = 1 - player;
             depth++;
         }
 
+        return depth == 0 ? state : state.game().new TicTacToeState(board.position());
+    }
+    
+    /*
+     * whether the first n elements of codes include code
+     */
+    private static boolean contains(int[] codes, int n, int code) {
+        for (int i = 0; i < n; i++) if (codes[i] == code) return true;
+        return false;
+    }
+
+    /*
+     * score of a rollout from start to end
+     */
+    private int score(State<TicTacToe> start, State<TicTacToe> end) {
 //        int parentScore = evaluate(parentNode.state(), parentNode.state().player());
 //        int childScore = evaluate(rolloutState, parentNode.state().player());
-        int parentScore = evaluate(parentNode.state(), mctsPlayer);
-        int childScore  = evaluate(rolloutState,     mctsPlayer);
+        int parentScore = evaluate(start, mctsPlayer);
+        int childScore  = evaluate(end,   mctsPlayer);
 
         if (childScore - parentScore >= 40) { // if score increase suddenly over 40, means about to win
             childScore += 100;
@@ -278,25 +277,6 @@ public class MCTS {
         return childScore;
     }
     
-    /*
-     * update playouts and wins
-     */
-    private void update(Node<TicTacToe> node, int score) {
-//        node.backPropagate();
-    	if (node instanceof TicTacToeNode ticTacToeNode) {
-            ticTacToeNode.increment(score);
-        }
-    }
-    
-    /*
-     * choose best score child after some simulations
-     */
-    private Node<TicTacToe> bestChild(Node<TicTacToe> node) {
-        return node.children().stream()
-                .max(Comparator.comparing(c -> (double) c.wins() / c.playouts()))
-                .orElseThrow();
-    }
-    
     /*
      * Score Evaluation
      * player: MCTS 
@@ -407,5 +387,13 @@ public class MCTS {
         return false;
     }
 
-
-}
\ No newline at end of file
+    /*
+     * the scratch space of the rollouts on one thread
+     */
+    private static class Scratch {
+        private final Board board = new Board();
+        private final int[] visited = new int[6];
+        // there are never more than 9 moves
+        private final int[] moves = new int[9], filteredMoves = new int[9], oppMoves = new int[9];
+    }
+}
@@ -5,16 +5,15 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Random;
 
 /**
  * This class represents the board of the Tic-tac-toe game.
  * It is a 3x3 matrix of 0s, 1s, and -1s for O, X, and . respectively.
+ * Internally, the cells of each player are held as a 9-bit mask (a bitboard), so that a move is a single OR
+ * and a win is a comparison with the masks of the eight lines.
  */
 public class Position {
 
@@ -65,13 +64,14 @@ public class Position {
     public Position move(int player, int x, int y) {
         if (full()) throw new RuntimeException("Position is full");
         if (player == last) throw new RuntimeException("consecutive moves by same player: " + player);
-        int[][] matrix = copyGrid();
-        if (matrix[x][y] < 0) {
+        if (x < 0 || x >= gridSize || y < 0 || y >= gridSize) throw new RuntimeException("Position has no cell: " + x + ", " + y);
+        int bit = 1 << (x * gridSize + y);
+        if (((noughts | crosses) & bit) == 0) {
             // TO BE IMPLEMENTED 
         	
         	
-        	matrix[x][y] = player;
-            return new Position(matrix, count + 1, player);
+            if (player == 0) return new Position(noughts | bit, crosses, count + 1, player, zobrist ^ zobristKeys[player][x * gridSize + y]);
+            return new Position(noughts, crosses | bit, count + 1, player, zobrist ^ zobristKeys[player][x * gridSize + y]);
             
         	
             // END SOLUTION
@@ -87,17 +87,34 @@ public class Position {
     public List<int[]> moves(int player) {
         if (player == last) throw new RuntimeException("consecutive moves by same player: " + player);
         List<int[]> result = new ArrayList<>();
-        for (int i = 0; i < gridSize; i++)
-            for (int j = 0; j < gridSize; j++)
-                if (grid[i][j] < 0)
-                    // TO BE IMPLEMENTED 
+        for (int empty = ~(noughts | crosses) & all; empty != 0; empty &= empty - 1) {
+            int cell = Integer.numberOfTrailingZeros(empty);
+                // TO BE IMPLEMENTED 
                 	
-                	result.add(new int[]{i, j});
+                	result.add(new int[]{cell / gridSize, cell % gridSize});
+        }
 //         ;
         // END SOLUTION
         return result;
     }
 
+    /**
+     * Method to write the cells (i * 3 + j) of all the possible moves on this Position into buffer,
+     * in the same order as moves(player).
+     * If buffer is too short, only its length of cells is written.
+     *
+     * @param player the player to move.
+     * @param buffer the array into which to write the cells.
+     * @return the number of possible moves.
+     */
+    int moves(int player, int[] buffer) {
+        if (player == last) throw new RuntimeException("consecutive moves by same player: " + player);
+        int n = 0;
+        for (int empty = ~(noughts | crosses) & all; empty != 0; empty &= empty - 1, n++)
+            if (n < buffer.length) buffer[n] = Integer.numberOfTrailingZeros(empty);
+        return n;
+    }
+
     /**
      * Method to yield a copy of this Position but reflected.
      * <p>
@@ -107,18 +124,11 @@ public class Position {
      * @return a new Position.
      */
     public Position reflect(int axis) {
-        int[][] matrix = copyGrid();
-        switch (axis) {
-            case 0:
-                for (int j = 0; j < gridSize; j++) swap(matrix, 0, j, 2, j); // middle row
-                break;
-            case 1:
-                for (int i = 0; i < gridSize; i++) swap(matrix, i, 0, i, 2); // middle column
-                break;
-            default:
-                throw new RuntimeException("reflect not implemented for " + axis);
-        }
-        return new Position(matrix, count, last);
+        return switch (axis) {
+            case 0 -> permute(reflectRows); // middle row
+            case 1 -> permute(reflectColumns); // middle column
+            default -> throw new RuntimeException("reflect not implemented for " + axis);
+        };
     }
 
     /**
@@ -128,11 +138,7 @@ public class Position {
      * @return a new Position which is rotated from this.
      */
     public Position rotate() {
-        int[][] matrix = new int[gridSize][gridSize];
-        for (int i = 0; i < gridSize; i++)
-            for (int j = 0; j < gridSize; j++)
-                matrix[i][j] = grid[j][gridSize - i - 1];
-        return new Position(matrix, count, last);
+        return permute(rotation);
     }
 
     /**
@@ -149,24 +155,38 @@ public class Position {
      * Method to determine if this Position has three in a row (i.e. a winning position).
      * Don't forget to check for columns and diagonals as well.
      * <p>
-     * NOTE: you may find the instance field xxx to be useful, as well as the projectRow, projectCol, etc. private methods.
+     * NOTE: each player's cells are held as a bit mask, so this is a test against each of the eight line masks.
      *
      * @return true if there are three cells in a line that are the same and equal to the last player.
      */
     boolean threeInARow() {
         // TO BE IMPLEMENTED 
     	
-    	for (int i = 0; i < gridSize; i++) {
-    	    if (Arrays.equals(projectRow(i), xxx)) return true;
-    	    if (Arrays.equals(projectCol(i), xxx)) return true;
-    	}
-    	if (Arrays.equals(projectDiag(true), xxx)) return true;
-    	if (Arrays.equals(projectDiag(false), xxx)) return true;
+    	return threeInARow(mask(last));
+        // END SOLUTION
+    }
 
+    /**
+     * @param mask the cells of one player as a bit mask.
+     * @return true if mask includes all three cells of a line.
+     */
+    static boolean threeInARow(int mask) {
+        for (int line : lines)
+            if ((mask & line) == line) return true;
+        return false;
+    }
 
-    	
-         return false;
-        // END SOLUTION
+    /**
+     * Method to determine if a player has two cells of a line whose third cell is empty (i.e. threatens to win).
+     *
+     * @param mine   the cells of the player as a bit mask.
+     * @param theirs the cells of the other player as a bit mask.
+     * @return true if there is such a line.
+     */
+    static boolean twoInARow(int mine, int theirs) {
+        for (int line : lines)
+            if (Integer.bitCount(mine & line) == 2 && (theirs & line) == 0) return true;
+        return false;
     }
 
     /**
@@ -176,7 +196,10 @@ public class Position {
      * @return an array of three ints.
      */
     int[] projectRow(int i) {
-        return grid[i];
+        int[] result = new int[gridSize];
+        for (int j = 0; j < gridSize; j++)
+            result[j] = cell(i, j);
+        return result;
     }
 
     /**
@@ -188,7 +211,7 @@ public class Position {
     int[] projectCol(int j) {
         int[] result = new int[gridSize];
         for (int i = 0; i < gridSize; i++)
-            result[i] = grid[i][j];
+            result[i] = cell(i, j);
         return result;
     }
 
@@ -202,11 +225,18 @@ public class Position {
         int[] result = new int[gridSize];
         for (int j = 0; j < gridSize; j++) {
             int i = b ? j : gridSize - j - 1;
-            result[j] = grid[i][j];
+            result[j] = cell(i, j);
         }
         return result;
     }
 
+    /**
+     * @return the number of elements (marks) in this Position.
+     */
+    int count() {
+        return count;
+    }
+
     /**
      * @return true if this Position has 9 elements.
      */
@@ -223,7 +253,7 @@ public class Position {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < gridSize; i++) {
             for (int j = 0; j < gridSize; j++) {
-                sb.append(render(grid[i][j]));
+                sb.append(render(cell(i, j)));
                 if (j < gridSize - 1) sb.append(' ');
             }
             if (i < gridSize - 1) sb.append('\n');
@@ -236,7 +266,7 @@ public class Position {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < gridSize; i++) {
             for (int j = 0; j < gridSize; j++) {
-                sb.append(grid[i][j]);
+                sb.append(cell(i, j));
                 if (j < gridSize - 1) sb.append(',');
             }
             if (i < gridSize - 1) sb.append('\n');
@@ -244,29 +274,110 @@ public class Position {
         return sb.toString();
     }
 
+    /**
+     * The Zobrist key of this Position: the exclusive-or of one random key for each occupied cell (and its occupant).
+     * It is maintained incrementally by move, so it costs nothing to look up.
+     *
+     * @return a 64-bit key which is equal for equal Positions.
+     */
+    public long zobrist() {
+        return zobrist;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Position position)) return false;
-        return Arrays.deepEquals(grid, position.grid);
+        return noughts == position.noughts && crosses == position.crosses;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(grid);
+        return Long.hashCode(zobrist);
     }
 
     Position(int[][] grid, int count, int last) {
-        this.grid = grid;
+        this(mask(grid, 0), mask(grid, 1), count, last);
+    }
+
+    private Position(int noughts, int crosses, int count, int last) {
+        this(noughts, crosses, count, last, zobrist(noughts, crosses));
+    }
+
+    private Position(int noughts, int crosses, int count, int last, long zobrist) {
+        this.noughts = noughts;
+        this.crosses = crosses;
         this.count = count;
         this.last = last;
-        xxx = new int[]{last, last, last};
+        this.zobrist = zobrist;
     }
 
-    private int[][] copyGrid() {
-        int[][] result = new int[gridSize][gridSize];
+    /**
+     * Method to yield the cells of grid which belong to player as a bit mask (bit i * 3 + j for cell [i][j]).
+     *
+     * @param grid   a 3x3 matrix.
+     * @param player the player.
+     * @return a 9-bit mask.
+     */
+    private static int mask(int[][] grid, int player) {
+        int result = 0;
         for (int i = 0; i < gridSize; i++)
-            result[i] = Arrays.copyOf(grid[i], gridSize);
+            for (int j = 0; j < gridSize; j++)
+                if (grid[i][j] == player) result |= 1 << (i * gridSize + j);
+        return result;
+    }
+
+    /**
+     * Method to calculate the Zobrist key of a Position from scratch.
+     *
+     * @param noughts the mask of O's cells.
+     * @param crosses the mask of X's cells.
+     * @return the exclusive-or of the keys of all the occupied cells.
+     */
+    private static long zobrist(int noughts, int crosses) {
+        long result = 0L;
+        for (int cell = 0; cell < gridSize * gridSize; cell++) {
+            if ((noughts & 1 << cell) != 0) result ^= zobristKeys[0][cell];
+            if ((crosses & 1 << cell) != 0) result ^= zobristKeys[1][cell];
+        }
+        return result;
+    }
+
+    /**
+     * @param player the player (0: O, 1: X).
+     * @return the mask of the cells of player.
+     */
+    private int mask(int player) {
+        return player == 0 ? noughts : player == 1 ? crosses : 0;
+    }
+
+    /**
+     * @return the player (0: O, 1: X) in cell [i][j], or -1 if it is empty.
+     */
+    private int cell(int i, int j) {
+        int bit = 1 << (i * gridSize + j);
+        return (crosses & bit) != 0 ? 1 : (noughts & bit) != 0 ? 0 : -1;
+    }
+
+    /**
+     * Method to move every cell of this Position according to a permutation (a reflection or rotation).
+     *
+     * @param permutation for each cell of the result, the cell of this Position from which it comes.
+     * @return a new Position.
+     */
+    private Position permute(int[] permutation) {
+        return new Position(permute(noughts, permutation), permute(crosses, permutation), count, last);
+    }
+
+    /**
+     * @param mask        a 9-bit mask.
+     * @param permutation for each cell of the result, the cell of mask from which it comes.
+     * @return the permuted mask.
+     */
+    private static int permute(int mask, int[] permutation) {
+        int result = 0;
+        for (int cell = 0; cell < permutation.length; cell++)
+            result |= (mask >> permutation[cell] & 1) << cell;
         return result;
     }
 
@@ -281,57 +392,117 @@ public class Position {
     
     /*
      * Normalize: Do a symmetry detection for tic tac toe to reduce the duplicated process in MCTS.
+     * The representative of all the symmetric boards is the one with the smallest code (see canonical).
      */
     
     public Position normalize() {
-    	List<Position> positions = new ArrayList<>(); 
-    	
-    	Position p = this;
-    	
-    	// Rotations of original board 
-    	positions.add(p);
-    	positions.add(p.rotate()); // 90
-    	positions.add(p.rotate().rotate()); // 180
-    	positions.add(p.rotate().rotate().rotate()); // 270
-    	
-    	// Rotations of horizontal reflected board
-    	Position horReflected = this.reflect(0);
+    	int code = canonical();
+    	return new Position(code & all, code >> gridSize * gridSize, count, last);
+    }
 
-    	positions.add(horReflected);
-    	positions.add(horReflected.rotate()); // 90
-    	positions.add(horReflected.rotate().rotate()); // 180
-    	positions.add(horReflected.rotate().rotate().rotate()); // 270
-    	
-    	// Rotations of vertical reflected board
-    	Position verReflected = this.reflect(1);
-    	positions.add(verReflected);
-    	positions.add(verReflected.rotate());
-    	positions.add(verReflected.rotate().rotate());
-    	positions.add(verReflected.rotate().rotate().rotate());
-    	
-    	// Choose 1 representation for all symmetric board state that are same (the smallest here)
-    	return Collections.min(positions, Comparator.comparing(Position::toString));
+    /**
+     * Method to yield the code of this Position: the cells of X (in the high 9 bits) and of O (in the low 9 bits).
+     *
+     * @return an 18-bit code which identifies the board.
+     */
+    public int code() {
+        return crosses << gridSize * gridSize | noughts;
     }
 
-    
     /**
-     * TESTME
+     * Method to encode the whole of this Position (see decode) as one int:
+     * the code in the low 18 bits, then the count (4 bits) and last + 1 (2 bits).
      *
-     * @param matrix the matrix to be operated on.
-     * @param i1     first row.
-     * @param j1     first column.
-     * @param i2     second row.
-     * @param j2     second column.
+     * @return an int from which this Position can be rebuilt.
      */
-    private void swap(int[][] matrix, int i1, int j1, int i2, int j2) {
-        int temp = matrix[i1][j1];
-        matrix[i1][j1] = matrix[i2][j2];
-        matrix[i2][j2] = temp;
+    int encode() {
+        return code() | count << 2 * gridSize * gridSize | (last + 1) << 2 * gridSize * gridSize + 4;
     }
 
-    private final int[][] grid;
+    /**
+     * Method to rebuild a Position from the result of encode.
+     *
+     * @param encoded the encoded Position.
+     * @return an equal Position.
+     */
+    static Position decode(int encoded) {
+        int code = encoded & (1 << 2 * gridSize * gridSize) - 1;
+        return new Position(code & all, code >> gridSize * gridSize, encoded >> 2 * gridSize * gridSize & 15, (encoded >> 2 * gridSize * gridSize + 4) - 1);
+    }
+
+    /**
+     * Method to yield the canonical code of this Position: the smallest code of its 8 symmetries (4 rotations,
+     * each with and without reflection). Symmetric Positions, and only those, have the same canonical code.
+     * The symmetries are looked up in precomputed tables, so nothing is allocated.
+     *
+     * @return an 18-bit code (see code) which identifies the board up to symmetry.
+     */
+    public int canonical() {
+        return canonical(noughts, crosses);
+    }
+
+    /**
+     * @param noughts the cells of O as a bit mask.
+     * @param crosses the cells of X as a bit mask.
+     * @return the canonical code of the board with those cells (see canonical()).
+     */
+    static int canonical(int noughts, int crosses) {
+        int result = Integer.MAX_VALUE;
+        for (short[] symmetry : symmetries) {
+            int code = symmetry[crosses] << gridSize * gridSize | symmetry[noughts];
+            if (code < result) result = code;
+        }
+        return result;
+    }
+
+    
+    // the cells of each player as a bit mask: bit i * 3 + j represents cell [i][j]
+    private final int noughts;
+    private final int crosses;
     final int last;
     private final int count;
     private final static int gridSize = 3;
-    private final int[] xxx;
+    private final long zobrist;
+
+    private final static int all = (1 << gridSize * gridSize) - 1;
+    // the three rows, the three columns and the two diagonals
+    private final static int[] lines = {0b000000111, 0b000111000, 0b111000000, 0b001001001, 0b010010010, 0b100100100, 0b100010001, 0b001010100};
+
+    // for each cell of a transformed Position, the cell from which it comes
+    private final static int[] rotation = new int[gridSize * gridSize];
+    private final static int[] reflectRows = new int[gridSize * gridSize];
+    private final static int[] reflectColumns = new int[gridSize * gridSize];
+
+    static {
+        for (int i = 0; i < gridSize; i++)
+            for (int j = 0; j < gridSize; j++) {
+                rotation[i * gridSize + j] = j * gridSize + gridSize - i - 1;
+                reflectRows[i * gridSize + j] = (gridSize - i - 1) * gridSize + j;
+                reflectColumns[i * gridSize + j] = i * gridSize + gridSize - j - 1;
+            }
+    }
+
+    // the 8 symmetries of the board (see canonical): for each symmetry, the image of every 9-bit mask
+    private final static short[][] symmetries = new short[8][all + 1];
+
+    static {
+        int[] permutation = null;
+        for (int k = 0; k < symmetries.length; k++) {
+            // 0: identity; 4: reflection; otherwise: the previous symmetry followed by a rotation
+            int[] next = new int[gridSize * gridSize];
+            for (int cell = 0; cell < next.length; cell++)
+                next[cell] = k == 0 ? cell : k == 4 ? reflectColumns[cell] : permutation[rotation[cell]];
+            permutation = next;
+            for (int mask = 0; mask <= all; mask++) symmetries[k][mask] = (short) permute(mask, permutation);
+        }
+    }
+
+    // one random key for each player (0: O, 1: X) in each cell; the seed is fixed so that keys are reproducible
+    private final static long[][] zobristKeys = new long[2][gridSize * gridSize];
+
+    static {
+        Random random = new Random(0x5A0B215DL);
+        for (long[] keys : zobristKeys)
+            for (int i = 0; i < keys.length; i++) keys[i] = random.nextLong();
+    }
 }
\ No newline at end of file
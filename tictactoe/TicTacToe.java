@@ -7,7 +7,9 @@ package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Game;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.StateCodec;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -73,6 +75,28 @@ public class TicTacToe implements Game<TicTacToe> {
         return new TicTacToeState();
     }
 
+    /**
+     * Method to yield a StateCodec for the States of this game (e.g. for an OffHeapNodeStore).
+     * Each State is stored as one int (see Position.encode).
+     *
+     * @return a StateCodec whose States belong to this game.
+     */
+    public StateCodec<TicTacToe> codec() {
+        return new StateCodec<>() {
+            public int bytes() {
+                return Integer.BYTES;
+            }
+
+            public void write(State<TicTacToe> state, ByteBuffer buffer, int offset) {
+                buffer.putInt(offset, ((TicTacToeState) state).position().encode());
+            }
+
+            public State<TicTacToe> read(ByteBuffer buffer, int offset) {
+                return new TicTacToeState(Position.decode(buffer.getInt(offset)));
+            }
+        };
+    }
+
     /**
      * Primary constructor.
      *
@@ -139,7 +163,7 @@ public class TicTacToe implements Game<TicTacToe> {
     /**
      * Inner class to define a State of TicTacToe.
      */
-    class TicTacToeState implements State<TicTacToe> {
+    public class TicTacToeState implements State<TicTacToe> {
         /**
          * Method to yield the game of which this is a State.
          *
@@ -179,6 +203,13 @@ public class TicTacToe implements Game<TicTacToe> {
             return position.winner();
         }
 
+        /**
+         * @return the number of moves made (the number of marks on the board).
+         */
+        public int ply() {
+            return position.count();
+        }
+
         /**
          * A random source associated with this State.
          * Currently, it is set to the same random as used by TicTacToe.
@@ -204,6 +235,30 @@ public class TicTacToe implements Game<TicTacToe> {
             return list;
         }
 
+        /**
+         * Method to write the codes of the moves into buffer: player << 8 plus the cell (i * 3 + j) of the move.
+         *
+         * @param player the player of the moves.
+         * @param buffer the array into which to write the codes.
+         * @return the number of moves.
+         */
+        public int generateMoves(int player, int[] buffer) {
+            int n = position.moves(player, buffer);
+            for (int k = 0; k < n && k < buffer.length; k++) buffer[k] |= player << 8;
+            return n;
+        }
+
+        /**
+         * Implement the move with the given code (see generateMoves) on this state.
+         *
+         * @param code the code of the move.
+         * @return a new state.
+         */
+        public State<TicTacToe> nextByCode(int code) {
+            int cell = code & 0xFF;
+            return new TicTacToeState(position.move(code >> 8, cell / 3, cell % 3));
+        }
+
         /**
          * Implement the given move on the given state.
          *
@@ -232,6 +287,25 @@ public class TicTacToe implements Game<TicTacToe> {
                     "\n}";
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TicTacToeState that)) return false;
+            return position.equals(that.position);
+        }
+
+        @Override
+        public int hashCode() {
+            return position.hashCode();
+        }
+
+        /**
+         * @return the Zobrist key of the Position of this State.
+         */
+        public long key() {
+            return position.zobrist();
+        }
+
         public TicTacToeState(Position position) {
             this.position = position;
         }
@@ -4,12 +4,15 @@
 
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ChildList;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.MoveCursor;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
 
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TicTacToeNode implements Node<TicTacToe> {
 
@@ -54,62 +57,107 @@ public class TicTacToeNode implements Node<TicTacToe> {
         children.add(new TicTacToeNode(state));
     }
 
+    /**
+     * Method to add an existing Node (e.g. from a transposition table) as a child of this Node.
+     *
+     * @param child the child Node.
+     */
+    public void addChild(Node<TicTacToe> child) {
+        children.add(child);
+    }
+
+    /**
+     * @return the moves yet to be tried, while this Node is being expanded one child at a time; otherwise null.
+     */
+    public MoveCursor untried() {
+        return untried;
+    }
+
+    /**
+     * Method to set (or clear) the moves yet to be tried.
+     *
+     * @param untried a MoveCursor or null.
+     */
+    public void untried(MoveCursor untried) {
+        this.untried = untried;
+    }
+
+    /**
+     * Method to remove all the children (and untried moves) of this Node, keeping its statistics.
+     */
+    public void prune() {
+        untried = null;
+        children.clear();
+    }
+
     /**
      * This method sets the number of wins and playouts according to the children states.
      */
     public void backPropagate() {
-        playouts = 0;
-        wins = 0;
+        int playouts = 0;
+        int wins = 0;
         for (Node<TicTacToe> child : children) {
             wins += child.wins();
             playouts += child.playouts();
         }
+        statistics.set(pack(wins, playouts));
     }
     
     /*
      * increment playouts and wins for MCTS
      */
     public void increment(int score) {
-        this.playouts += 1;
-        this.wins += score;
+        statistics.addAndGet(pack(score, 1));
+    }
+
+    /*
+     * increment playouts and wins by several playouts at once (e.g. merged from another tree)
+     */
+    public void increment(int wins, int playouts) {
+        statistics.addAndGet(pack(wins, playouts));
     }
 
     /**
      * @return the score for this Node and its descendents a win is worth 2 points, a draw is worth 1 point.
      */
     public int wins() {
-        return wins;
+        return (int) (statistics.get() >> 32);
     }
 
     /**
      * @return the number of playouts evaluated (including this node). A leaf node will have a playouts value of 1.
      */
     public int playouts() {
-        return playouts;
+        return (int) statistics.get();
     }
 
     public TicTacToeNode(State<TicTacToe> state) {
         this.state = state;
-        children = new ArrayList<>();
+        children = new ChildList<>();
         initializeNodeData();
     }
 
     private void initializeNodeData() {
         if (isLeaf()) {
-            playouts = 1;
             Optional<Integer> winner = state.winner();
             if (winner.isPresent())
-                wins = 2; // CONSIDER check that the winner is the correct player. We shouldn't need to.
+                statistics.set(pack(2, 1)); // CONSIDER check that the winner is the correct player. We shouldn't need to.
             else
-                wins = 1; // a draw.
+                statistics.set(pack(1, 1)); // a draw.
         }
     }
     
-    
+    /*
+     * wins and playouts are packed into one long (wins in the high half) so that both can be updated
+     * together, atomically and without locking, by concurrent searches.
+     * NOTE: this relies on playouts never being negative.
+     */
+    private static long pack(int wins, int playouts) {
+        return ((long) wins << 32) + playouts;
+    }
 
     private final State<TicTacToe> state;
-    private final ArrayList<Node<TicTacToe>> children;
-
-    private int wins;
-    private int playouts;
+    private final List<Node<TicTacToe>> children;
+    private final AtomicLong statistics = new AtomicLong();
+    private volatile MoveCursor untried;    // see ExpansionPolicy.lazy
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BoardTest {
+
+    /**
+     * Test that a Board agrees (encoded, since equals only compares the cells) with the States of random games, move by move, and that unmake restores it.
+     */
+    @Test
+    public void testAgreesWithState() {
+        Random random = new Random(0L);
+        Board board = new Board();
+        int[] expected = new int[9], actual = new int[9];
+        for (int game = 0; game < 200; game++) {
+            State<TicTacToe> state = new TicTacToe(0L).start();
+            board.load(((TicTacToe.TicTacToeState) state).position());
+            int moves = 0;
+            while (true) {
+                Position position = ((TicTacToe.TicTacToeState) state).position();
+                assertEquals(position.encode(), board.position().encode());
+                assertEquals(state.isTerminal(), board.isTerminal());
+                assertEquals((int) state.winner().orElse(-1), board.winner());
+                assertEquals(position.canonical(), board.canonical());
+                assertEquals(new MCTS(new TicTacToeNode(state), false).twoInARowThreatCheck(position, state.player()), board.twoInARow(state.player()));
+                if (state.isTerminal()) break;
+                int n = state.generateMoves(state.player(), expected);
+                assertEquals(n, board.moves(state.player(), actual));
+                for (int k = 0; k < n; k++) {
+                    assertEquals(expected[k], actual[k]);
+                    board.make(actual[k]);
+                    assertEquals(((TicTacToe.TicTacToeState) state.nextByCode(actual[k])).position().encode(), board.position().encode());
+                    board.unmake();
+                }
+                int code = expected[random.nextInt(n)];
+                state = state.nextByCode(code);
+                board.make(code);
+                moves++;
+            }
+            // take back the whole game
+            for (; moves > 0; moves--) board.unmake();
+            assertEquals(TicTacToe.startingPosition().encode(), board.position().encode());
+        }
+    }
+}
@@ -15,6 +15,7 @@ import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe.MCTS;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.TranspositionTable;
 
 import java.util.*;
 
@@ -127,7 +128,9 @@ public class MCTSTest {
 
     
     /**
-     * Test rollout and verify if score is valid.
+     * Test that one iteration rolls out a legal successor of the start and backs its score up to the root.
+     * NOTE: the best child of a single iteration is the one rolled out (unvisited children are never best),
+     * and its score may be negative.
      */
     @Test
     public void testRollout() {
@@ -135,10 +138,17 @@ public class MCTSTest {
         TicTacToe game = new TicTacToe(0L);
         TicTacToeState start = (TicTacToeState) game.start();
         TicTacToeNode node = new TicTacToeNode(start);
-        MCTS mcts = new MCTS(node, false);
+        MCTS mcts = new MCTS(node, false, 0L);
 
-        int score = mcts.run(1).wins();
-        assertTrue("Score should be valid", score >= 0);
+        Node<TicTacToe> child = mcts.run(1);
+        assertTrue("Child should be a legal successor", successors(start).contains(((TicTacToeState) child.state()).position()));
+        assertEquals(1, child.playouts());
+        assertEquals(1, node.playouts());
+        assertEquals("Score should be backed up to the root", child.wins(), node.wins());
+        // the same seed rolls out the same child, with the same score
+        Node<TicTacToe> again = new MCTS(new TicTacToeNode(game.start()), false, 0L).run(1);
+        assertEquals(child.state(), again.state());
+        assertEquals(child.wins(), again.wins());
         System.out.println("Finished testRollout.");
     }
 
@@ -212,10 +222,92 @@ public class MCTSTest {
         TicTacToe freshGame = new TicTacToe(0L);
         TicTacToe.TicTacToeState freshStart = (TicTacToe.TicTacToeState) freshGame.start();
         TicTacToeNode freshRoot = new TicTacToeNode(freshStart);
-        MCTS freshMcts = new MCTS(freshRoot, false);
+        MCTS freshMcts = new MCTS(freshRoot, false, 0L);
 
-        int score = freshMcts.run(1).wins();
-        assertTrue("Rollout should finish normally within depth limit", score >= 0);
+        Node<TicTacToe> child = freshMcts.run(1);
+        assertEquals("Rollout should finish normally within depth limit", 1, child.playouts());
+        assertEquals(child.wins(), freshRoot.wins());
+    }
+
+    /**
+     * @return the Positions which can be reached from state in one move.
+     */
+    private static Set<Position> successors(State<TicTacToe> state) {
+        Set<Position> result = new HashSet<>();
+        for (Move<TicTacToe> move : state.moves(state.player())) result.add(((TicTacToeState) state.next(move)).position());
+        return result;
+    }
+
+    /**
+     * Confirm that the same seed gives the same search, also when its rollouts are run on several threads.
+     */
+    @Test
+    public void testSeededSearch() {
+        TicTacToe game = new TicTacToe(0L);
+        List<String> first = new ArrayList<>();
+        for (int k = 0; k < 2; k++) {
+            MCTS seeded = new MCTS(new TicTacToeNode(game.start()), false, 7L);
+            seeded.search().runBatched(1000, 3, 100);
+            List<String> statistics = new ArrayList<>();
+            for (Node<TicTacToe> child : seeded.search().root().children()) statistics.add(child.wins() + "/" + child.playouts());
+            if (k == 0) first = statistics;
+            else assertEquals(first, statistics);
+        }
+    }
+
+    /**
+     * Test that the children of a root are real successors of it, even when the transposition table already holds
+     * a reflection or rotation of a successor.
+     */
+    @Test
+    public void testRootChildrenAreSuccessors() {
+        State<TicTacToe> start = new TicTacToe(0L).start();
+        List<State<TicTacToe>> openings = start.successors();
+        State<TicTacToe> parent = openings.get(0), other = openings.get(2); // X in two different corners
+        TranspositionTable<TicTacToe> table = new TranspositionTable<>(TicTacToeNode::new);
+        // a successor of other which is symmetric to a successor of parent (but not one itself)
+        State<TicTacToe> successor = null, variant = null;
+        for (State<TicTacToe> s : parent.successors())
+            for (State<TicTacToe> v : other.successors())
+                if (successor == null && canonical(s) == canonical(v) && !parent.successors().contains(v)) {
+                    successor = s;
+                    variant = v;
+                }
+        assertNotNull(successor);
+        table.get(canonical(variant), variant);
+        TranspositionTable<TicTacToe> children = table.children(parent);
+        Node<TicTacToe> child = children.get(canonical(successor), successor);
+        assertEquals(successor, child.state());
+        assertSame(child, children.get(canonical(successor), successor));
+        assertEquals(1, table.size());
+        // a Node of the table which is a real successor is shared
+        State<TicTacToe> shared = null;
+        for (State<TicTacToe> s : parent.successors()) if (canonical(s) != canonical(successor)) shared = s;
+        assertSame(table.get(canonical(shared), shared), children.get(canonical(shared), shared));
+    }
+
+    private static int canonical(State<TicTacToe> state) {
+        return ((TicTacToeState) state).position().canonical();
+    }
+
+    /**
+     * Confirm that every move of whole games between two engines, each keeping its tree (reroot) from move to move,
+     * is a legal successor of the position it was made from, although symmetric positions share their nodes.
+     */
+    @Test
+    public void testSelfPlayMovesAreLegal() {
+        for (long seed = 0; seed < 20; seed++) {
+            State<TicTacToe> state = new TicTacToe(seed).start();
+            MCTS[] engines = new MCTS[2];
+            while (!state.isTerminal()) {
+                int player = state.player();
+                if (engines[player] == null) engines[player] = new MCTS(new TicTacToeNode(state), player, player != state.game().opener(), seed);
+                else engines[player].reroot(state);
+                State<TicTacToe> next = engines[player].run(200).state();
+                assertTrue("illegal move from " + state + " to " + next, state.successors().contains(next));
+                state = next;
+            }
+        }
     }
     
     
@@ -30,6 +30,27 @@ public class PositionTest {
         target.move(1, 0, 1);
     }
 
+    @Test
+    public void testMoveColumnOffGrid() {
+        String grid = "X . .\n. O .\n. . X";
+        Position target = Position.parsePosition(grid, 1);
+        // a column beyond the grid must not wrap round onto the next row
+        RuntimeException e = assertThrows(RuntimeException.class, () -> target.move(0, 0, 3));
+        assertEquals("Position has no cell: 0, 3", e.getMessage());
+        e = assertThrows(RuntimeException.class, () -> target.move(0, 1, -1));
+        assertEquals("Position has no cell: 1, -1", e.getMessage());
+    }
+
+    @Test
+    public void testMoveRowOffGrid() {
+        String grid = "X . .\n. O .\n. . X";
+        Position target = Position.parsePosition(grid, 1);
+        RuntimeException e = assertThrows(RuntimeException.class, () -> target.move(0, 3, 0));
+        assertEquals("Position has no cell: 3, 0", e.getMessage());
+        e = assertThrows(RuntimeException.class, () -> target.move(0, -1, 2));
+        assertEquals("Position has no cell: -1, 2", e.getMessage());
+    }
+
     @Test
     public void testMove1() {
         String grid = "X . .\n. O .\n. . X";
@@ -144,6 +165,49 @@ public class PositionTest {
         assertEquals(grid, target.render());
     }
 
+    @Test
+    public void testRotateReflect() {
+        Position target = Position.parsePosition("X O .\n. X .\n. . O", 0);
+        assertEquals(Position.parsePosition(". . O\nO X .\nX . .", 0), target.rotate());
+        assertEquals(Position.parsePosition(". . O\n. X .\nX O .", 0), target.reflect(0));
+        assertEquals(Position.parsePosition(". O X\n. X .\nO . .", 0), target.reflect(1));
+        assertEquals(target, target.rotate().rotate().rotate().rotate());
+        assertEquals(target.normalize(), target.rotate().reflect(1).normalize());
+        assertEquals(Position.parsePosition(". . O\nO X .\nX . .", 0).zobrist(), target.rotate().zobrist());
+    }
+
+    @Test
+    public void testCanonical() {
+        Position target = Position.parsePosition("X O .\n. X .\n. . O", 0);
+        Position[] symmetric = {target, target.rotate(), target.rotate().rotate(), target.rotate().rotate().rotate(),
+                target.reflect(0), target.reflect(1), target.reflect(0).rotate(), target.reflect(1).rotate()};
+        for (Position p : symmetric) {
+            assertEquals(target.canonical(), p.canonical());
+            assertEquals(target.normalize(), p.normalize());
+        }
+        assertEquals(target.canonical(), target.normalize().code());
+        assertNotEquals(target.canonical(), Position.parsePosition("X . O\n. X .\n. . O", 0).canonical());
+        // the 8 symmetries of an asymmetric board are all different
+        Position asymmetric = Position.parsePosition("X O .\n. . .\n. . .", 0);
+        assertEquals(8, java.util.Arrays.stream(new Position[]{asymmetric, asymmetric.rotate(), asymmetric.rotate().rotate(),
+                asymmetric.rotate().rotate().rotate(), asymmetric.reflect(1), asymmetric.reflect(1).rotate(),
+                asymmetric.reflect(1).rotate().rotate(), asymmetric.reflect(1).rotate().rotate().rotate()}).distinct().count());
+    }
+
+    @Test
+    public void testZobrist() {
+        String grid = "X . .\n. O .\n. . X";
+        Position target = Position.parsePosition(grid, 1);
+        Position moved = target.move(0, 0, 1);
+        Position expected = Position.parsePosition(grid.replaceFirst("\\.", "O"), 0);
+        assertEquals(expected.zobrist(), moved.zobrist());
+        assertEquals(expected.hashCode(), moved.hashCode());
+        assertNotEquals(target.zobrist(), moved.zobrist());
+        // transposition: the same cells in a different order
+        Position start = Position.parsePosition(". . .\n. . .\n. . .", 0);
+        assertEquals(start.move(1, 0, 0).move(0, 1, 1).move(1, 2, 2).zobrist(), start.move(1, 2, 2).move(0, 1, 1).move(1, 0, 0).zobrist());
+    }
+
     @Test
     public void testToString() {
         Position target = Position.parsePosition("X . .\n. O .\n. . X", 1);
@@ -1,8 +1,11 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.StateCodec;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
@@ -22,4 +25,39 @@ public class TicTacToeTest {
         if (winner.isPresent()) assertEquals(Integer.valueOf(TicTacToe.X), winner.get());
         else fail("no winner");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that every State of a game survives being written and read by the codec.
+     */
+    @Test
+    public void testCodec() {
+        TicTacToe target = new TicTacToe(0L);
+        StateCodec<TicTacToe> codec = target.codec();
+        ByteBuffer buffer = ByteBuffer.allocate(codec.bytes() + 1);
+        State<TicTacToe> state = target.start();
+        while (true) {
+            codec.write(state, buffer, 1);
+            assertEquals(state, codec.read(buffer, 1));
+            if (state.isTerminal()) break;
+            state = state.next(state.chooseMove(state.player()));
+        }
+    }
+
+    /**
+     * Test that the move codes follow the order of moves and lead to the same States as the moves.
+     */
+    @Test
+    public void testMoveCodes() {
+        State<TicTacToe> state = new TicTacToe(0L).start();
+        int[] codes = new int[9];
+        while (!state.isTerminal()) {
+            int player = state.player();
+            int n = state.generateMoves(player, codes);
+            assertEquals(state.moves(player).size(), n);
+            int k = 0;
+            for (Move<TicTacToe> move : state.moves(player)) assertEquals(state.next(move), state.nextByCode(codes[k++]));
+            assertEquals(n, state.generateMoves(player, new int[1]));
+            state = state.nextByCode(codes[n - 1]);
+        }
+    }
+}
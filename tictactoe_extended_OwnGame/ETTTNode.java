@@ -1,37 +1,48 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ChildList;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.MoveCursor;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
 
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ETTTNode implements Node<ExtendableTicTacToe> {
 
     private final State<ExtendableTicTacToe> state;
-    private final ArrayList<Node<ExtendableTicTacToe>> children;
-    private int wins;
-    private int playouts;
+    private final List<Node<ExtendableTicTacToe>> children;
+    // wins (high half) and playouts (low half), packed so that concurrent searches can update both atomically
+    private final AtomicLong statistics = new AtomicLong();
+    // the moves yet to be tried, while this node is being expanded one child at a time (see ExpansionPolicy.lazy)
+    private volatile MoveCursor untried;
 
     public ETTTNode(State<ExtendableTicTacToe> state) {
         this.state = state;
-        this.children = new ArrayList<>();
+        this.children = new ChildList<>();
         initializeNodeData();
     }
     
 
     private void initializeNodeData() {
         if (isLeaf()) {
-            playouts = 1;
             Optional<Integer> winner = state.winner();
-            wins = winner.isPresent() ? 2 : 1;  // 2 for a win, 1 for a draw
+            statistics.set(pack(winner.isPresent() ? 2 : 1, 1));  // 2 for a win, 1 for a draw
         }
     }
     
     public void increment(int score) {
-        this.playouts += 1;
-        this.wins     += score;
+        statistics.addAndGet(pack(score, 1));
+    }
+
+    public void increment(int wins, int playouts) {
+        statistics.addAndGet(pack(wins, playouts));
+    }
+
+    private static long pack(int wins, int playouts) {
+        return ((long) wins << 32) + playouts;
     }
 
     
@@ -60,24 +71,46 @@ public class ETTTNode implements Node<ExtendableTicTacToe> {
         children.add(new ETTTNode(newState));
     }
 
+    @Override
+    public void addChild(Node<ExtendableTicTacToe> child) {
+        children.add(child);
+    }
+
+    @Override
+    public MoveCursor untried() {
+        return untried;
+    }
+
+    @Override
+    public void untried(MoveCursor untried) {
+        this.untried = untried;
+    }
+
+    @Override
+    public void prune() {
+        untried = null;
+        children.clear();
+    }
+
     @Override
     public void backPropagate() {
-        wins = 0;
-        playouts = 0;
+        int wins = 0;
+        int playouts = 0;
         for (Node<ExtendableTicTacToe> c : children) {
             wins     += c.wins();
             playouts += c.playouts();
         }
+        statistics.set(pack(wins, playouts));
     }
 
     @Override
     public int wins() {
-        return wins;
+        return (int) (statistics.get() >> 32);
     }
 
     @Override
     public int playouts() {
-        return playouts;
+        return (int) statistics.get();
     }
 }
 
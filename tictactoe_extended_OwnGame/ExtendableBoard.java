@@ -0,0 +1,147 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame;
+
+/**
+ * A mutable Extendable TicTacToe board, on which moves are made and unmade in place: the scratch pad of rollouts
+ * and look-ahead, where every move on an ExtendablePosition would create a new position (and EState).
+ * The nodes of a search keep their immutable positions: load a board from one, play on it,
+ * and make an ExtendablePosition (position()) only of the board that is kept.
+ * <p>
+ * Moves are the codes of EState.generateMoves (player << 8 plus the index of the move, see ExtendablePosition.moves).
+ * The bitboards are the same as those of ExtendablePosition; each make saves them, so that unmake can restore them.
+ * NOTE: a board is not thread-safe: each thread needs its own.
+ */
+class ExtendableBoard {
+    private static final int MAX = 9;
+    private static final Directions[] DIRECTIONS = Directions.values();
+    // no game has more moves than there are cells and extensions
+    private static final int CAPACITY = MAX*MAX + DIRECTIONS.length;
+
+    private long xLo, xHi, oLo, oHi;            // the marks of X and O
+    private long windowLo, windowHi;            // the active window (rowMin..rowMax)×(colMin..colMax)
+    private long emptyLo, emptyHi;              // the EMPTY cells
+    private int rowMin, rowMax, colMin, colMax;
+    private int lastPlayer, moveCount;
+
+    // for each move made and not unmade: the masks and (packed) bounds, last player and move count before it
+    private final long[] masks = new long[8 * CAPACITY];
+    private final int[] others = new int[CAPACITY];
+    private int depth;
+
+    /** set this board to pos (forgetting any moves which have not been unmade) */
+    void load(ExtendablePosition pos) {
+      xLo = pos.xLo; xHi = pos.xHi;
+      oLo = pos.oLo; oHi = pos.oHi;
+      emptyLo = pos.emptyLo; emptyHi = pos.emptyHi;
+      setWindow(pos.rowMin, pos.rowMax, pos.colMin, pos.colMax);
+      lastPlayer = pos.lastPlayer;
+      moveCount = pos.moveCount;
+      depth = 0;
+    }
+
+    /** a new ExtendablePosition equal to this board */
+    ExtendablePosition position() {
+      return new ExtendablePosition(xLo, xHi, oLo, oHi, emptyLo, emptyHi, lastPlayer, moveCount, rowMin, rowMax, colMin, colMax);
+    }
+
+    /** make the move with the given code; NOTE: for speed, the move is not checked (use codes from moves) */
+    void make(int code) {
+      int m = 8 * depth;
+      masks[m] = xLo; masks[m+1] = xHi; masks[m+2] = oLo; masks[m+3] = oHi;
+      masks[m+4] = emptyLo; masks[m+5] = emptyHi; masks[m+6] = windowLo; masks[m+7] = windowHi;
+      others[depth++] = rowMin | rowMax << 4 | colMin << 8 | colMax << 12 | (lastPlayer + 1) << 16 | moveCount << 18;
+      int player = code >> 8, index = code & 0xFF;
+      if (index < MAX*MAX) {
+        long lo = index < 64 ? 1L << index : 0L, hi = index < 64 ? 0L : 1L << index;
+        if (player == 0) { oLo |= lo; oHi |= hi; }
+        else             { xLo |= lo; xHi |= hi; }
+        emptyLo &= ~lo; emptyHi &= ~hi;
+      } else {
+        Directions d = DIRECTIONS[index - MAX*MAX];
+        long oldLo = windowLo, oldHi = windowHi;
+        setWindow(rowMin - (d.hasNorth()?3:0), rowMax + (d.hasSouth()?3:0), colMin - (d.hasWest()?3:0), colMax + (d.hasEast()?3:0));
+        // convert newly revealed cells from Zombie to EMPTY
+        long revealedLo = windowLo & ~oldLo, revealedHi = windowHi & ~oldHi;
+        xLo &= ~revealedLo; xHi &= ~revealedHi; oLo &= ~revealedLo; oHi &= ~revealedHi;
+        emptyLo |= revealedLo; emptyHi |= revealedHi;
+      }
+      lastPlayer = player;
+      moveCount++;
+    }
+
+    /** take back the last move which was made (and not yet unmade) */
+    void unmake() {
+      int m = 8 * --depth;
+      xLo = masks[m]; xHi = masks[m+1]; oLo = masks[m+2]; oHi = masks[m+3];
+      emptyLo = masks[m+4]; emptyHi = masks[m+5]; windowLo = masks[m+6]; windowHi = masks[m+7];
+      int other = others[depth];
+      rowMin = other & 15; rowMax = other >> 4 & 15; colMin = other >> 8 & 15; colMax = other >> 12 & 15;
+      lastPlayer = (other >> 16 & 3) - 1;
+      moveCount = other >>> 18;
+    }
+
+    /** write the codes of the moves of player into buffer (at least 89 long), in the same order as EState.generateMoves */
+    int moves(int player, int[] buffer) {
+      if (player==lastPlayer) throw new RuntimeException("consecutive moves");
+      int n = 0;
+      for(long m = emptyLo & windowLo; m != 0; m &= m - 1)
+        buffer[n++] = player << 8 | Long.numberOfTrailingZeros(m);
+      for(long m = emptyHi & windowHi; m != 0; m &= m - 1)
+        buffer[n++] = player << 8 | 64 + Long.numberOfTrailingZeros(m);
+      for(Directions d:DIRECTIONS)
+        if (canExtend(d)) buffer[n++] = player << 8 | MAX*MAX + d.ordinal();
+      return n;
+    }
+
+    /** the winner (1 for X, 0 for O), or -1 if there is none (cf. ExtendablePosition.winner) */
+    int winner() {
+      boolean x = ExtendablePosition.threeInARow(xLo & windowLo, xHi & windowHi);
+      boolean o = ExtendablePosition.threeInARow(oLo & windowLo, oHi & windowHi);
+      if (x && o) return position().winner().orElse(-1);    // unplayable, so it need not be fast
+      return x ? 1 : o ? 0 : -1;
+    }
+
+    /** true if the game is over (cf. ExtendablePosition.isTerminal) */
+    boolean isTerminal() {
+      if (winner() >= 0) return true;
+      if (((emptyLo & windowLo) | (emptyHi & windowHi)) != 0) return false;
+      for(Directions d:DIRECTIONS)
+        if (canExtend(d)) return false;
+      return true;
+    }
+
+    /** the canonical key of this board (see ExtendablePosition.canonical) */
+    long canonical() {
+      return ExtendablePosition.canonical(xLo, xHi, oLo, oHi, emptyLo, emptyHi, rowMin, rowMax, colMin, colMax);
+    }
+
+    int getRowMin() {
+      return rowMin;
+    }
+    int getRowMax() {
+      return rowMax;
+    }
+    int getColMin() {
+      return colMin;
+    }
+    int getColMax() {
+      return colMax;
+    }
+
+    /** 1 for X, 0 for O, -1 for EMPTY or ZOMBIE (cf. ExtendablePosition.get, but without the bounds check) */
+    int get(int row, int col) {
+      int i = row*MAX+col;
+      long bit = 1L << i;       // NOTE: shifts are taken mod 64
+      return ((i < 64 ? xLo : xHi) & bit) != 0 ? 1 : ((i < 64 ? oLo : oHi) & bit) != 0 ? 0 : -1;
+    }
+
+    private boolean canExtend(Directions d) {
+      return ExtendablePosition.canExtend(d, rowMin, rowMax, colMin, colMax);
+    }
+
+    private void setWindow(int rowMin, int rowMax, int colMin, int colMax) {
+      this.rowMin = rowMin; this.rowMax = rowMax;
+      this.colMin = colMin; this.colMax = colMax;
+      windowLo = ExtendablePosition.window(0, rowMin, rowMax, colMin, colMax);
+      windowHi = ExtendablePosition.window(1, rowMin, rowMax, colMin, colMax);
+    }
+}
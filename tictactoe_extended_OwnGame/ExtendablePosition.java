@@ -1,27 +1,139 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.awt.Point;        
 import java.util.Map;
+import java.util.Random;
 
+/**
+ * The 9×9 board of Extendable TicTacToe, held as 81-cell bitboards: cell (r,c) is bit r*9+c,
+ * bits 0..63 in the "lo" long and bits 64..80 in the "hi" long of each pair.
+ * There is one mask per player, one for the active window and one for the empty (playable) cells;
+ * a cell in none of the masks is a ZOMBIE.
+ */
 public class ExtendablePosition {
-    private final Cell[][] grid;      // always 9×9
-    private final int rowMin, rowMax, colMin, colMax;
-    private final int lastPlayer, moveCount;
+    final long xLo, xHi, oLo, oHi;                    // the marks of X and O
+    private final long windowLo, windowHi;            // the active window (rowMin..rowMax)×(colMin..colMax)
+    final long emptyLo, emptyHi;                      // the EMPTY cells
+    final int rowMin, rowMax, colMin, colMax;
+    final int lastPlayer, moveCount;
+    private final long zobrist;       // see zobrist()
     private static final int MAX=9;
+    private static final Directions[] DIRECTIONS = Directions.values();
 
+    // Zobrist keys: one per player (0: O, 1: X) per cell, and one per value of each window bound; the seed is fixed
+    private static final long[][] PIECE_KEYS = new long[2][MAX*MAX];
+    private static final long[][] BOUND_KEYS = new long[4][MAX+1];
+    // keys for canonical(): one per kind of cell (0: O, 1: X, 2: ZOMBIE) per index i*9+j within the window,
+    // and one per shape (height, width) of window
+    private static final long[][] CELL_KEYS = new long[3][MAX*MAX];
+    private static final long[][] SHAPE_KEYS = new long[MAX+1][MAX+1];
+    static {
+        Random random = new Random(0xE77E5DL);
+        for (long[] keys : PIECE_KEYS) for (int i = 0; i < keys.length; i++) keys[i] = random.nextLong();
+        for (long[] keys : BOUND_KEYS) for (int i = 0; i < keys.length; i++) keys[i] = random.nextLong();
+        for (long[] keys : CELL_KEYS) for (int i = 0; i < keys.length; i++) keys[i] = random.nextLong();
+        for (long[] keys : SHAPE_KEYS) for (int i = 0; i < keys.length; i++) keys[i] = random.nextLong();
+    }
+
+    // bit masks (lo, hi) of the cells in rows [from..to) and in columns [from..to)
+    private static final long[][][] ROWS = new long[MAX+1][MAX+1][2];
+    private static final long[][][] COLS = new long[MAX+1][MAX+1][2];
+    // win detection: for each direction (→, ↓, ↘, ↙) the bit distance between neighbours on a line,
+    // and the mask (lo, hi) of the cells at which a line of three can start without leaving the board
+    private static final int[] SHIFTS = {1, MAX, MAX+1, MAX-1};
+    private static final long[][] STARTS = new long[4][2];
+    static {
+        for (int r = 0; r < MAX; r++)
+          for (int c = 0; c < MAX; c++) {
+            for (int from = 0; from <= MAX; from++)
+              for (int to = from; to <= MAX; to++) {
+                if (r >= from && r < to) set(ROWS[from][to], r*MAX+c);
+                if (c >= from && c < to) set(COLS[from][to], r*MAX+c);
+              }
+            if (c <= MAX-3) set(STARTS[0], r*MAX+c);
+            if (r <= MAX-3) set(STARTS[1], r*MAX+c);
+            if (r <= MAX-3 && c <= MAX-3) set(STARTS[2], r*MAX+c);
+            if (r <= MAX-3 && c >= 2) set(STARTS[3], r*MAX+c);
+          }
+    }
+
+    // the eight symmetries of an h×w window: SYMMETRIES[k][h][w][i*9+j] is the index i'*9+j' of cell (i,j) after
+    // k%4 clockwise quarter turns followed, if k >= 4, by a reflection left-to-right; odd k swap height and width
+    private static final byte[][][][] SYMMETRIES = new byte[8][MAX+1][MAX+1][MAX*MAX];
+    static {
+        for (int k = 0; k < 8; k++)
+          for (int h = 1; h <= MAX; h++)
+            for (int w = 1; w <= MAX; w++)
+              for (int i = 0; i < h; i++)
+                for (int j = 0; j < w; j++) {
+                  int r = i, c = j, height = h, width = w;
+                  for (int turn = 0; turn < k % 4; turn++) {
+                    int t = r; r = c; c = height - 1 - t;
+                    t = height; height = width; width = t;
+                  }
+                  if (k >= 4) c = width - 1 - c;
+                  SYMMETRIES[k][h][w][i*MAX+j] = (byte) (r*MAX+c);
+                }
+    }
+
+    /** NOTE: the Cell grid is only read here: later changes to it do not affect the position */
     public ExtendablePosition(Cell[][] grid,
                               int lastPlayer, int moveCount,
                               int rowMin, int rowMax,
                               int colMin, int colMax) {
-        this.grid = grid;
+        this(mask(grid, Cell.X, 0), mask(grid, Cell.X, 1), mask(grid, Cell.O, 0), mask(grid, Cell.O, 1),
+             mask(grid, Cell.EMPTY, 0), mask(grid, Cell.EMPTY, 1),
+             lastPlayer, moveCount, rowMin, rowMax, colMin, colMax);
+    }
+
+    ExtendablePosition(long xLo, long xHi, long oLo, long oHi, long emptyLo, long emptyHi,
+                       int lastPlayer, int moveCount,
+                       int rowMin, int rowMax,
+                       int colMin, int colMax) {
+        this(xLo, xHi, oLo, oHi, emptyLo, emptyHi, lastPlayer, moveCount, rowMin, rowMax, colMin, colMax,
+             pieceKeys(xLo, xHi, 1) ^ pieceKeys(oLo, oHi, 0) ^ windowKey(rowMin, rowMax, colMin, colMax) ^ turnKey(lastPlayer, moveCount));
+    }
+
+    private ExtendablePosition(long xLo, long xHi, long oLo, long oHi, long emptyLo, long emptyHi,
+                               int lastPlayer, int moveCount,
+                               int rowMin, int rowMax,
+                               int colMin, int colMax, long zobrist) {
+        this.xLo = xLo; this.xHi = xHi;
+        this.oLo = oLo; this.oHi = oHi;
+        this.emptyLo = emptyLo; this.emptyHi = emptyHi;
+        this.windowLo = window(0, rowMin, rowMax, colMin, colMax);
+        this.windowHi = window(1, rowMin, rowMax, colMin, colMax);
         this.lastPlayer = lastPlayer;
         this.moveCount = moveCount;
         this.rowMin = rowMin; this.rowMax = rowMax;
         this.colMin = colMin; this.colMax = colMax;
+        this.zobrist = zobrist;
+    }
+
+    /** the mask (lo if half is 0, else hi) of the cells of the window (rowMin..rowMax)×(colMin..colMax) */
+    static long window(int half, int rowMin, int rowMax, int colMin, int colMax) {
+        return ROWS[rowMin][rowMax][half] & COLS[colMin][colMax][half];
+    }
+
+    private static void set(long[] mask, int i) {
+        mask[i >> 6] |= 1L << i;
+    }
+
+    private static boolean isSet(long lo, long hi, int i) {
+        return ((i < 64 ? lo : hi) >>> i & 1) != 0;   // NOTE: shifts are taken mod 64
+    }
+
+    /** the mask (lo if half is 0, else hi) of the cells of grid which hold cell */
+    private static long mask(Cell[][] grid, Cell cell, int half) {
+        long m = 0L;
+        for (int i = 64 * half; i < Math.min(64 * (half + 1), MAX*MAX); i++)
+          if (grid[i / MAX][i % MAX] == cell) m |= 1L << i;
+        return m;
     }
     
     public int getLastPlayer() {
@@ -48,21 +160,19 @@ public class ExtendablePosition {
             throw new IndexOutOfBoundsException(
                 String.format("(%d,%d) outside [%d..%d)×[%d..%d)", 
                     row, col, rowMin, rowMax, colMin, colMax));
-        Cell cell = grid[row][col];
-        return switch(cell) {
-            case X -> 1;
-            case O -> 0;
-            default -> -1;  // EMPTY or ZOMBIE
-        };
+        return cell(row, col);
+    }
+
+    /** 1 for X, 0 for O, -1 for EMPTY or ZOMBIE (anywhere on the 9×9 board) */
+    private int cell(int row, int col) {
+        int i = row*MAX+col;
+        return isSet(xLo, xHi, i) ? 1 : isSet(oLo, oHi, i) ? 0 : -1;
     }
     
     /** start in the center 3×3 with all currently unavailable cells as ZOMBIE */
     public static ExtendablePosition start() {
-      Cell[][] g = new Cell[MAX][MAX];
-      for(int r=0;r<MAX;r++)
-        for(int c=0;c<MAX;c++)
-          g[r][c] = (r>=3&&r<6&&c>=3&&c<6) ? Cell.EMPTY : Cell.ZOMBIE;
-      return new ExtendablePosition(g, /*last*/TicTacToe.O, /*count*/0, 3,6,3,6);
+      long[] empty = {ROWS[3][6][0] & COLS[3][6][0], ROWS[3][6][1] & COLS[3][6][1]};
+      return new ExtendablePosition(0L,0L,0L,0L, empty[0],empty[1], /*last*/TicTacToe.O, /*count*/0, 3,6,3,6);
     }
 
     /** list all PlaceMoves with valid ExtendMove's Direction*/
@@ -70,11 +180,15 @@ public class ExtendablePosition {
       if (player==lastPlayer) throw new RuntimeException("consecutive moves");
       var L = new ArrayList<ExtendableMove>();
       
-      //place in empty cells
-      for(int r=rowMin;r<rowMax;r++)
-        for(int c=colMin;c<colMax;c++)
-          if (grid[r][c]==Cell.EMPTY)
-            L.add(new PlaceMove(player,r,c));
+      //place in empty cells (in row-major order, which is the order of the bits)
+      for(long m = emptyLo & windowLo; m != 0; m &= m - 1) {
+        int i = Long.numberOfTrailingZeros(m);
+        L.add(new PlaceMove(player, i / MAX, i % MAX));
+      }
+      for(long m = emptyHi & windowHi; m != 0; m &= m - 1) {
+        int i = 64 + Long.numberOfTrailingZeros(m);
+        L.add(new PlaceMove(player, i / MAX, i % MAX));
+      }
       
       //extend in any direction that stays within 9×9 limits
       for(Directions d:Directions.values())
@@ -82,7 +196,37 @@ public class ExtendablePosition {
       return L;
     }
 
+    /**
+     * write the moves of player, in the same order as moves(player), into buffer (as far as it has room):
+     * a place at (r,c) as r*9+c and an extension in direction d as 81 + d.ordinal(); return the number of moves
+     */
+    public int moves(int player, int[] buffer) {
+      if (player==lastPlayer) throw new RuntimeException("consecutive moves");
+      int n = 0;
+      for(long m = emptyLo & windowLo; m != 0; m &= m - 1, n++)
+        if (n < buffer.length) buffer[n] = Long.numberOfTrailingZeros(m);
+      for(long m = emptyHi & windowHi; m != 0; m &= m - 1, n++)
+        if (n < buffer.length) buffer[n] = 64 + Long.numberOfTrailingZeros(m);
+      for(Directions d:DIRECTIONS)
+        if (canExtend(d)) {
+          if (n < buffer.length) buffer[n] = MAX*MAX + d.ordinal();
+          n++;
+        }
+      return n;
+    }
+
+    /** apply the move of player with the given index (see moves(int, int[])) */
+    public ExtendablePosition next(int player, int index) {
+      if (index < MAX*MAX) return place(player, index / MAX, index % MAX);
+      return extend(player, DIRECTIONS[index - MAX*MAX]);
+    }
+
     private boolean canExtend(Directions d) {
+      return canExtend(d, rowMin, rowMax, colMin, colMax);
+    }
+
+    /** true if the window (rowMin..rowMax)×(colMin..colMax) can be extended in direction d */
+    static boolean canExtend(Directions d, int rowMin, int rowMax, int colMin, int colMax) {
       int nr = rowMin   - (d.hasNorth()?3:0);
       int MR = rowMax   + (d.hasSouth()?3:0);
       int nc = colMin   - (d.hasWest()?3:0);
@@ -97,10 +241,13 @@ public class ExtendablePosition {
     }
 
     private ExtendablePosition place(int pl, int r, int c) {
-      if (grid[r][c]!=Cell.EMPTY) throw new RuntimeException("occupied");
-      Cell[][] g2 = deepCopy(grid);
-      g2[r][c] = (pl==0?Cell.O:Cell.X);
-      return new ExtendablePosition(g2, pl, moveCount+1, rowMin,rowMax,colMin,colMax);
+      int i = r*MAX+c;
+      if (!isSet(emptyLo, emptyHi, i)) throw new RuntimeException("occupied");
+      long lo = i < 64 ? 1L << i : 0L, hi = i < 64 ? 0L : 1L << i;
+      long key = zobrist ^ PIECE_KEYS[pl][i] ^ turnKey(lastPlayer, moveCount) ^ turnKey(pl, moveCount+1);
+      if (pl==0)
+        return new ExtendablePosition(xLo, xHi, oLo | lo, oHi | hi, emptyLo & ~lo, emptyHi & ~hi, pl, moveCount+1, rowMin,rowMax,colMin,colMax, key);
+      return new ExtendablePosition(xLo | lo, xHi | hi, oLo, oHi, emptyLo & ~lo, emptyHi & ~hi, pl, moveCount+1, rowMin,rowMax,colMin,colMax, key);
     }
 
     private ExtendablePosition extend(int pl, Directions d) {
@@ -108,13 +255,14 @@ public class ExtendablePosition {
       int MR = rowMax   + (d.hasSouth()?3:0);
       int nc = colMin   - (d.hasWest()?3:0);
       int MC = colMax   + (d.hasEast()?3:0);
-      Cell[][] g2 = deepCopy(grid);
       // convert newly revealed cells from Zombie to EMPTY
-      for(int r=nr; r<MR; r++)
-        for(int c=nc; c<MC; c++)
-          if (r<rowMin||r>=rowMax||c<colMin||c>=colMax)
-            g2[r][c] = Cell.EMPTY;
-      return new ExtendablePosition(g2, pl, moveCount+1, nr,MR,nc,MC);
+      long revealedLo = ROWS[nr][MR][0] & COLS[nc][MC][0] & ~windowLo;
+      long revealedHi = ROWS[nr][MR][1] & COLS[nc][MC][1] & ~windowHi;
+      // the empty cells are implied by the window, so only the bounds (not the revealed cells) change the key
+      long key = zobrist ^ windowKey(rowMin,rowMax,colMin,colMax) ^ windowKey(nr,MR,nc,MC)
+                         ^ turnKey(lastPlayer, moveCount) ^ turnKey(pl, moveCount+1);
+      return new ExtendablePosition(xLo & ~revealedLo, xHi & ~revealedHi, oLo & ~revealedLo, oHi & ~revealedHi,
+                                    emptyLo | revealedLo, emptyHi | revealedHi, pl, moveCount+1, nr,MR,nc,MC, key);
     }
 
     public boolean isTerminal() {
@@ -124,36 +272,57 @@ public class ExtendablePosition {
     
 
     public Optional<Integer> winner() {
+        // only marks inside the window count
+        boolean x = threeInARow(xLo & windowLo, xHi & windowHi);
+        boolean o = threeInARow(oLo & windowLo, oHi & windowHi);
+        if (x && o) return scanWinner();
+        if (x) return Optional.of(1);
+        if (o) return Optional.of(0);
+        return Optional.empty();
+    }
+
+    /** true if the marks (lo, hi) include three in a line in any direction: shift each mark onto its neighbours and AND */
+    static boolean threeInARow(long lo, long hi) {
+        for (int d = 0; d < SHIFTS.length; d++) {
+            int s = SHIFTS[d];
+            long lines = lo & (lo >>> s | hi << 64 - s) & (lo >>> 2*s | hi << 64 - 2*s) & STARTS[d][0];
+            lines |= hi & hi >>> s & hi >>> 2*s & STARTS[d][1];
+            if (lines != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Only for (unplayable) positions in which both players have three in a row:
+     * the winner is the owner of the first line found by the original scan (horizontal, vertical, \, /).
+     */
+    private Optional<Integer> scanWinner() {
         //check horizontal
         for (int r = rowMin; r < rowMax; r++) {
             for (int c = colMin; c <= colMax - 3; c++) {
-                Cell a = grid[r][c], b = grid[r][c+1], c2 = grid[r][c+2];
-                if (a != Cell.EMPTY && a != Cell.ZOMBIE && a==b && b==c2)
-                    return Optional.of(a==Cell.X ? 1 : 0);
+                int a = cell(r,c), b = cell(r,c+1), c2 = cell(r,c+2);
+                if (a >= 0 && a==b && b==c2) return Optional.of(a);
             }
         }
         //check vertical
         for (int c = colMin; c < colMax; c++) {
             for (int r = rowMin; r <= rowMax - 3; r++) {
-                Cell a = grid[r][c], b = grid[r+1][c], c2 = grid[r+2][c];
-                if (a != Cell.EMPTY && a != Cell.ZOMBIE && a==b && b==c2)
-                    return Optional.of(a==Cell.X ? 1 : 0);
+                int a = cell(r,c), b = cell(r+1,c), c2 = cell(r+2,c);
+                if (a >= 0 && a==b && b==c2) return Optional.of(a);
             }
         }
         //check diagonal: \
         for (int r = rowMin; r <= rowMax - 3; r++) {
             for (int c = colMin; c <= colMax - 3; c++) {
-                Cell a = grid[r][c], b = grid[r+1][c+1], c2 = grid[r+2][c+2];
-                if (a != Cell.EMPTY && a != Cell.ZOMBIE && a==b && b==c2)
-                    return Optional.of(a==Cell.X ? 1 : 0);
+                int a = cell(r,c), b = cell(r+1,c+1), c2 = cell(r+2,c+2);
+                if (a >= 0 && a==b && b==c2) return Optional.of(a);
             }
         }
         // check diagonal: /
         for (int r = rowMin; r <= rowMax - 3; r++) {
             for (int c = colMin + 2; c < colMax; c++) {
-                Cell a = grid[r][c], b = grid[r+1][c-1], c2 = grid[r+2][c-2];
-                if (a != Cell.EMPTY && a != Cell.ZOMBIE && a==b && b==c2)
-                    return Optional.of(a==Cell.X ? 1 : 0);
+                int a = cell(r,c), b = cell(r+1,c-1), c2 = cell(r+2,c-2);
+                if (a >= 0 && a==b && b==c2) return Optional.of(a);
             }
         }
         return Optional.empty();
@@ -162,19 +331,20 @@ public class ExtendablePosition {
     public void printWindow() {
       for(int r=rowMin;r<rowMax;r++) {
         for(int c=colMin;c<colMax;c++) {
-          System.out.print(switch(grid[r][c]) {
-            case EMPTY->'.'; case O->'O'; case X->'X'; default->'?';
-          }+" ");
+          System.out.print(symbol(r, c)+" ");
         }
         System.out.println();
       }
     }
 
     private boolean noEmptyInWindow() {
-      for(int r=rowMin;r<rowMax;r++)
-        for(int c=colMin;c<colMax;c++)
-          if (grid[r][c]==Cell.EMPTY) return false;
-      return true;
+      return ((emptyLo & windowLo) | (emptyHi & windowHi)) == 0;
+    }
+
+    /** '.' for EMPTY, 'O', 'X', or '?' for ZOMBIE */
+    private char symbol(int r, int c) {
+      int i = r*MAX+c;
+      return isSet(emptyLo, emptyHi, i) ? '.' : isSet(oLo, oHi, i) ? 'O' : isSet(xLo, xHi, i) ? 'X' : '?';
     }
     private boolean allExtensionsBlocked() {
       for(Directions d:Directions.values())
@@ -182,10 +352,68 @@ public class ExtendablePosition {
       return true;
     }
 
-    private Cell[][] deepCopy(Cell[][] src) {
-      Cell[][] dest = new Cell[MAX][MAX];
-      for(int i=0;i<MAX;i++) dest[i]=src[i].clone();
-      return dest;
+    /** the number of bytes written by write */
+    static final int BYTES = 6 * Long.BYTES + 2 * Integer.BYTES;
+
+    /** write this position (its masks, window bounds, last player and move count) into buffer at offset */
+    void write(ByteBuffer buffer, int offset) {
+      buffer.putLong(offset, xLo).putLong(offset + 8, xHi).putLong(offset + 16, oLo).putLong(offset + 24, oHi)
+            .putLong(offset + 32, emptyLo).putLong(offset + 40, emptyHi)
+            .putInt(offset + 48, rowMin | rowMax << 4 | colMin << 8 | colMax << 12 | (lastPlayer + 1) << 16)
+            .putInt(offset + 52, moveCount);
+    }
+
+    /** read a position written by write from buffer at offset */
+    static ExtendablePosition read(ByteBuffer buffer, int offset) {
+      int bounds = buffer.getInt(offset + 48);
+      return new ExtendablePosition(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getLong(offset + 16), buffer.getLong(offset + 24),
+                                    buffer.getLong(offset + 32), buffer.getLong(offset + 40),
+                                    (bounds >> 16) - 1, buffer.getInt(offset + 52),
+                                    bounds & 15, bounds >> 4 & 15, bounds >> 8 & 15, bounds >> 12 & 15);
+    }
+
+    /**
+     * 64-bit Zobrist key of this position (pieces, window and turn), kept up to date incrementally by place/extend.
+     * Equal positions have equal keys.
+     */
+    public long zobrist() {
+        return zobrist;
+    }
+
+    private static long pieceKeys(long lo, long hi, int player) {
+      long key = 0L;
+      for(long m = lo; m != 0; m &= m - 1) key ^= PIECE_KEYS[player][Long.numberOfTrailingZeros(m)];
+      for(long m = hi; m != 0; m &= m - 1) key ^= PIECE_KEYS[player][64 + Long.numberOfTrailingZeros(m)];
+      return key;
+    }
+
+    private static long windowKey(int rowMin, int rowMax, int colMin, int colMax) {
+      return BOUND_KEYS[0][rowMin] ^ BOUND_KEYS[1][rowMax] ^ BOUND_KEYS[2][colMin] ^ BOUND_KEYS[3][colMax];
+    }
+
+    // the move count is unbounded (through the public constructor), so it is hashed rather than looked up
+    private static long turnKey(int lastPlayer, int moveCount) {
+      long z = ((long) moveCount << 1 | (lastPlayer & 1)) * 0x9E3779B97F4A7C15L;
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ExtendablePosition that)) return false;
+        return zobrist == that.zobrist
+            && lastPlayer == that.lastPlayer && moveCount == that.moveCount
+            && rowMin == that.rowMin && rowMax == that.rowMax
+            && colMin == that.colMin && colMax == that.colMax
+            && xLo == that.xLo && xHi == that.xHi && oLo == that.oLo && oHi == that.oHi
+            && emptyLo == that.emptyLo && emptyHi == that.emptyHi;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobrist);
     }
     
     public int[][] asArray() {
@@ -200,56 +428,99 @@ public class ExtendablePosition {
         return arr;
     }
     
-    public String normalize() {
-        // first, extract the window into a 2D array of chars
-        int h = rowMax - rowMin, w = colMax - colMin;
-        char[][] win = new char[h][w];
-        for (int i = 0; i < h; i++) {
-            for (int j = 0; j < w; j++) {
-                Cell c = grid[rowMin + i][colMin + j];
-                win[i][j] = (c == Cell.EMPTY ? '.' : c == Cell.O ? 'O' : c == Cell.X ? 'X' : '?');
-            }
+    /**
+     * 64-bit key of the window of this position, normalized for symmetry: the same for all eight rotations and
+     * reflections of the window (wherever it lies on the board) and, but for Zobrist collisions, different otherwise.
+     * Each symmetry is applied by permuting the indices of the marked cells, so nothing is allocated.
+     * NOTE: as it is a hash, use canonicalKey (which is exact) to share the nodes of a search.
+     */
+    public long canonical() {
+        return canonical(xLo, xHi, oLo, oHi, emptyLo, emptyHi, rowMin, rowMax, colMin, colMax);
+    }
+
+    /** the canonical key (see canonical()) of the position with the given masks and window */
+    static long canonical(long xLo, long xHi, long oLo, long oHi, long emptyLo, long emptyHi,
+                          int rowMin, int rowMax, int colMin, int colMax) {
+        long windowLo = window(0, rowMin, rowMax, colMin, colMax), windowHi = window(1, rowMin, rowMax, colMin, colMax);
+        int h = rowMax - rowMin, w = colMax - colMin, base = rowMin*MAX + colMin;
+        long zombieLo = windowLo & ~(xLo | oLo | emptyLo), zombieHi = windowHi & ~(xHi | oHi | emptyHi);
+        long result = Long.MAX_VALUE;
+        for (int k = 0; k < SYMMETRIES.length; k++) {
+            byte[] symmetry = SYMMETRIES[k][h][w];
+            long key = (k & 1) == 0 ? SHAPE_KEYS[h][w] : SHAPE_KEYS[w][h];
+            key ^= symmetricKeys(xLo & windowLo, xHi & windowHi, base, symmetry, CELL_KEYS[1])
+                 ^ symmetricKeys(oLo & windowLo, oHi & windowHi, base, symmetry, CELL_KEYS[0])
+                 ^ symmetricKeys(zombieLo, zombieHi, base, symmetry, CELL_KEYS[2]);
+            if (key < result) result = key;
         }
+        return result;
+    }
 
-        List<String> reps = new ArrayList<>();
-        char[][] cur = win;
-        // generate 4 rotations
-        for (int r = 0; r < 4; r++) {
-            reps.add(windowToString(cur));
-            reps.add(windowToString(reflectHorizontal(cur)));
-            // rotate 90° for next iteration
-            cur = rotate90(cur);
+    /**
+     * Exact key of the window of this position, normalized for symmetry (cf. canonical()):
+     * two positions have equal keys if, and only if, their windows are the same up to rotation and reflection
+     * (wherever they lie on the board). So positions whose canonical() collide are never merged in a transposition table.
+     */
+    public CanonicalKey canonicalKey() {
+        int h = rowMax - rowMin, w = colMax - colMin, base = rowMin*MAX + colMin;
+        long zombieLo = windowLo & ~(xLo | oLo | emptyLo), zombieHi = windowHi & ~(xHi | oHi | emptyHi);
+        long[] best = null, cells = new long[CanonicalKey.LENGTH];
+        for (int k = 0; k < SYMMETRIES.length; k++) {
+            byte[] symmetry = SYMMETRIES[k][h][w];
+            cells[0] = (k & 1) == 0 ? h*(MAX+1) + w : w*(MAX+1) + h;
+            symmetric(xLo & windowLo, xHi & windowHi, base, symmetry, cells, 1);
+            symmetric(oLo & windowLo, oHi & windowHi, base, symmetry, cells, 3);
+            symmetric(zombieLo, zombieHi, base, symmetry, cells, 5);
+            if (best == null || Arrays.compare(cells, best) < 0) {
+                long[] t = best == null ? new long[CanonicalKey.LENGTH] : best;
+                best = cells;
+                cells = t;
+            }
         }
-        return Collections.min(reps);
+        return new CanonicalKey(best);
     }
 
-    // helper to turn a char matrix into a single string
-    private String windowToString(char[][] m) {
-        StringBuilder sb = new StringBuilder();
-        for (char[] row : m) {
-            sb.append(row).append('|');
+    /**
+     * The exact key of a window normalized for symmetry (see canonicalKey):
+     * its shape, then the masks (lo, hi) of its X, O and ZOMBIE cells, indexed i*9+j within the window.
+     */
+    public static final class CanonicalKey {
+        public boolean equals(Object o) {
+            return this == o || o instanceof CanonicalKey that && Arrays.equals(cells, that.cells);
         }
-        return sb.toString();
+
+        public int hashCode() {
+            return Arrays.hashCode(cells);
+        }
+
+        private CanonicalKey(long[] cells) {
+            this.cells = cells;
+        }
+
+        private static final int LENGTH = 7;
+        private final long[] cells;
     }
 
-    // rotate 90
-    private char[][] rotate90(char[][] m) {
-        int H = m.length, W = m[0].length;
-        char[][] x = new char[W][H];
-        for (int i = 0; i < H; i++)
-            for (int j = 0; j < W; j++)
-                x[j][H - 1 - i] = m[i][j];
-        return x;
+    /** the masks (lo, hi) of the cells (lo, hi) relative to base, after symmetry, written into cells[at] and cells[at+1] */
+    private static void symmetric(long lo, long hi, int base, byte[] symmetry, long[] cells, int at) {
+      long rLo = 0L, rHi = 0L;
+      for(long m = lo; m != 0; m &= m - 1) {
+        int t = symmetry[Long.numberOfTrailingZeros(m) - base];
+        if (t < 64) rLo |= 1L << t; else rHi |= 1L << t;
+      }
+      for(long m = hi; m != 0; m &= m - 1) {
+        int t = symmetry[64 + Long.numberOfTrailingZeros(m) - base];
+        if (t < 64) rLo |= 1L << t; else rHi |= 1L << t;
+      }
+      cells[at] = rLo;
+      cells[at+1] = rHi;
     }
 
-    // reflect left‑to‑right
-    private char[][] reflectHorizontal(char[][] m) {
-        int H = m.length, W = m[0].length;
-        char[][] x = new char[H][W];
-        for (int i = 0; i < H; i++)
-            for (int j = 0; j < W; j++)
-                x[i][W - 1 - j] = m[i][j];
-        return x;
+    /** the keys of the cells (lo, hi) relative to base, after symmetry */
+    private static long symmetricKeys(long lo, long hi, int base, byte[] symmetry, long[] keys) {
+      long key = 0L;
+      for(long m = lo; m != 0; m &= m - 1) key ^= keys[symmetry[Long.numberOfTrailingZeros(m) - base]];
+      for(long m = hi; m != 0; m &= m - 1) key ^= keys[symmetry[64 + Long.numberOfTrailingZeros(m) - base]];
+      return key;
     }
 }
-
@@ -5,10 +5,13 @@ package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame;
  */
 
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.FastRandom;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Game;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.StateCodec;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 
@@ -22,7 +25,20 @@ public class ExtendableTicTacToe implements Game<ExtendableTicTacToe> {
   }
   public int opener() { return TicTacToe.X; }
 
-  class EState implements State<ExtendableTicTacToe> {
+  /** a StateCodec for the States of this game (e.g. for an OffHeapNodeStore); see ExtendablePosition.write */
+  public StateCodec<ExtendableTicTacToe> codec() {
+    return new StateCodec<>() {
+      public int bytes() { return ExtendablePosition.BYTES; }
+      public void write(State<ExtendableTicTacToe> state, ByteBuffer buffer, int offset) {
+        ((EState) state).getPosition().write(buffer, offset);
+      }
+      public State<ExtendableTicTacToe> read(ByteBuffer buffer, int offset) {
+        return new EState(ExtendablePosition.read(buffer, offset));
+      }
+    };
+  }
+
+  public class EState implements State<ExtendableTicTacToe> {
     private final ExtendablePosition pos;
     EState(ExtendablePosition pos){ this.pos=pos; }
     
@@ -33,7 +49,7 @@ public class ExtendableTicTacToe implements Game<ExtendableTicTacToe> {
     public boolean isTerminal()               { return pos.isTerminal(); }
     public Optional<Integer> winner()         { return pos.winner(); }
     public int player()                       { return (pos.getLastPlayer()==TicTacToe.X ? TicTacToe.O : TicTacToe.X); }
-    public Random random()                    { return new Random(); }
+    public Random random()                    { return FastRandom.current(); }   // this thread's: nothing to allocate or contend for
 
     public Collection<Move<ExtendableTicTacToe>> moves(int player){
       return List.copyOf(pos.moves(player));
@@ -42,11 +58,37 @@ public class ExtendableTicTacToe implements Game<ExtendableTicTacToe> {
     public State<ExtendableTicTacToe> next(Move<ExtendableTicTacToe> m){
       return new EState(pos.next((ExtendableMove)m));
     }
+
+    /** the codes of the moves are player << 8 plus the index of the move in ExtendablePosition.moves(int, int[]) */
+    public int generateMoves(int player, int[] buffer) {
+      int n = pos.moves(player, buffer);
+      for (int k = 0; k < n && k < buffer.length; k++) buffer[k] |= player << 8;
+      return n;
+    }
+    public State<ExtendableTicTacToe> nextByCode(int code) {
+      return new EState(pos.next(code >> 8, code & 0xFF));
+    }
     
 
     @Override public String toString() {
       pos.printWindow();
       return "";
     }
+
+    @Override public boolean equals(Object o) {
+      return this == o || (o instanceof EState that && pos.equals(that.pos));
+    }
+
+    @Override public int hashCode() {
+      return pos.hashCode();
+    }
+
+    @Override public long key() {
+      return pos.zobrist();
+    }
+
+    @Override public int ply() {
+      return pos.getMoveCount();
+    }
   }
 }
\ No newline at end of file
@@ -4,10 +4,16 @@
 
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ExpansionPolicy;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.FastRandom;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.MonteCarloTreeSearch;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.RolloutPolicy;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchStats;
 import com.phasmidsoftware.dsaipg.projects.mcts.tictactoe_extended_OwnGame.ExtendableTicTacToe.EState;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
+import java.time.Duration;
 import java.util.*;
 import java.util.Scanner;
 
@@ -17,184 +23,209 @@ import java.util.Scanner;
  */
 public class MCTS {
 	
-    private final Node<ExtendableTicTacToe> root;
+    private final MonteCarloTreeSearch<ExtendableTicTacToe> search;
     private final boolean isHumanFirst;
-    private final Random random = new Random();
-    private final Set<String> expanded = new HashSet<>();
     private final int mctsPlayer;
+    // provisional loss for paths being searched by other threads (about the value of a lost game)
+    private static final int VIRTUAL_LOSS = 100;
+    // the scratch board and move buffers of the rollouts on each thread (see rollout)
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
 
-    public MCTS(Node<ExtendableTicTacToe> root, boolean isHumanFirst) {
-        this.root = root;
+    /**
+     * player: the player for whom the search plays (and from whose point of view it scores positions);
+     * seed: the seed of the search (the same seed gives the same search, see MonteCarloTreeSearch)
+     */
+    public MCTS(Node<ExtendableTicTacToe> root, int player, boolean isHumanFirst, long seed) {
         this.isHumanFirst = isHumanFirst;
-        this.mctsPlayer = root.state().game().opener();
+        this.mctsPlayer = player;
+        // Expand node one child at a time (most of up to 89 children are never visited),
+        // sharing symmetric or transposed positions via their (exact) canonical key
+        this.search = new MonteCarloTreeSearch<>(root, ETTTNode::new,
+                ExpansionPolicy.lazy(s -> ((EState) s).getPosition().canonicalKey()),
+                new RolloutPolicy<>() {
+                    public State<ExtendableTicTacToe> rollout(State<ExtendableTicTacToe> state, Random random) {
+                        return MCTS.this.rollout(state, random, null);
+                    }
+
+                    public State<ExtendableTicTacToe> rollout(State<ExtendableTicTacToe> state, Random random, SearchStats stats) {
+                        return MCTS.this.rollout(state, random, stats);
+                    }
+                }, this::score, seed);
     }
 
-    /** Run N simulations and return the best child */
-    public Node<ExtendableTicTacToe> run(int iterations) {
-    	expanded.clear(); 
-        for (int i = 0; i < iterations; i++) {
-            simulate(root);
-        }
-        return bestChild(root);
+    /** the search plays for the opener */
+    public MCTS(Node<ExtendableTicTacToe> root, boolean isHumanFirst, long seed) {
+        this(root, root.state().game().opener(), isHumanFirst, seed);
     }
 
-    /** One MCTS iteration: Selection, Expansion, Simulation, Backpropagation */
-    private void simulate(Node<ExtendableTicTacToe> start) {
-        Deque<Node<ExtendableTicTacToe>> path = new ArrayDeque<>();
-        Node<ExtendableTicTacToe> node = start;
-
-        //Selection
-        while (!node.isLeaf() && !node.children().isEmpty()) {
-            node = select(node);
-            path.push(node);
-        }
+    public MCTS(Node<ExtendableTicTacToe> root, boolean isHumanFirst) {
+        this(root, isHumanFirst, new FastRandom().nextLong());
+    }
 
-        //Expansion
-        if (!node.state().isTerminal()) {
-            expand(node);
-            if (!node.children().isEmpty()) {
-                node = select(node);
-                path.push(node);
-            }
-        }
+    /** Run N simulations and return the best child */
+    public Node<ExtendableTicTacToe> run(int iterations) {
+        return search.run(iterations);
+    }
 
-        //Simulation
-        int rolloutScore = rollout(node.state()); 
+    /** Run as many simulations as fit into budget and return the best child */
+    public Node<ExtendableTicTacToe> run(Duration budget) {
+        return search.run(budget);
+    }
 
-        // Backpropagation
-        
-        for (Node<ExtendableTicTacToe> n : path) {
-            if (n instanceof ETTTNode etn) {
-                etn.increment(rolloutScore);
-            } else {
-                n.backPropagate();
-            }
-        }
+    /** Run N simulations shared between independent trees on several threads and return the best child */
+    public Node<ExtendableTicTacToe> run(int iterations, int threads) {
+        return search.run(iterations, threads);
     }
 
-    /** Selection using UCB1 */
-    private Node<ExtendableTicTacToe> select(Node<ExtendableTicTacToe> node) {
-        double logN = Math.log(Math.max(1, node.playouts()));
-        return node.children().stream()
-                .max(Comparator.comparing(c -> ucb1(c, logN)))
-                .orElseThrow();
+    /** Move the root of the search to state, keeping the statistics of the matching subtree (if any) */
+    public void reroot(State<ExtendableTicTacToe> state) {
+        search.reroot(state);
     }
 
-    private double ucb1(Node<ExtendableTicTacToe> node, double logN) {
-        if (node.playouts() == 0) return Double.MAX_VALUE;
-        return (double) node.wins() / node.playouts()
-                + Math.sqrt(2 * logN / node.playouts());
+    /** The underlying search engine (e.g. for tree-parallel search) */
+    public MonteCarloTreeSearch<ExtendableTicTacToe> search() {
+        return search;
     }
 
-    /** Expand node, avoiding duplicates via symmetry normalization */
-    private void expand(Node<ExtendableTicTacToe> node) {
-        State<ExtendableTicTacToe> st = node.state();
-        int player = st.player();
-        for (Move<ExtendableTicTacToe> m : st.moves(player)) {
-            State<ExtendableTicTacToe> nxt = st.next(m);
-            // Normalize the underlying position
-            EState es = (EState) nxt;
-            String norm = es.getPosition().normalize();
-            if (expanded.add(norm)) {
-                node.addChild(nxt);
-            }
-        }
+    /**
+     * Heuristic play-out (at most 4 moves) from state; return the state reached.
+     * The moves (and the look-ahead for each candidate) are made and unmade on this thread's scratch board,
+     * so only the final state is allocated.
+     * It is public so that it can be benchmarked (see ExtendableBenchmark).
+     */
+    public State<ExtendableTicTacToe> rollout(State<ExtendableTicTacToe> state, Random random) {
+        return rollout(state, random, null);
     }
 
-    /** Random play to terminal, return winning player or -1 */
-    private int rollout(State<ExtendableTicTacToe> state) {
-    	 EState cur = (EState) state;
-    	    int player = cur.player();
+    /**
+     * The rollout of an instrumented search records its parts in stats (unless it is null):
+     * "canonical" (the symmetry filter: calls of canonical, with the make and unmake of each candidate),
+     * "look-ahead" (the immediate wins of either side: moves made to test winner, which is called once for each)
+     * and "threats" (calls of twoInARowThreatCheck).
+     * Each part is timed as a whole for each move of the rollout, as a timer around each call would cost more than the call.
+     */
+    private State<ExtendableTicTacToe> rollout(State<ExtendableTicTacToe> state, Random random, SearchStats stats) {
+    	    Scratch scratch = this.scratch.get();
+    	    ExtendableBoard board = scratch.board;
+    	    board.load(((EState) state).getPosition());
+    	    int player = state.player();
     	    int depth = 0;
 
-    	    Set<String> visited = new HashSet<>();
-    	    visited.add(cur.getPosition().normalize());
-
+    	    // canonical keys of the positions seen in this rollout (the start plus at most 4 moves);
+    	    // these are hashes, but a collision would only keep one move out of the rollout
+    	    long[] visited = scratch.visited;
+    	    int seen = 0;
+    	    visited[seen++] = board.canonical();
+    	    // the calls and nanoseconds of the parts (only if instrumented)
+    	    long canonicals = 1, canonical = 0, lookAheads = 0, lookAhead = 0, threats = 0, threat = 0;
 
-    	    while (!cur.isTerminal() && depth < 4) {
+    	    // the codes of the moves (see State.generateMoves)
+    	    int[] all = scratch.all, legal = scratch.legal, replies = scratch.replies;
+    	    while (!board.isTerminal() && depth < 4) {
 
     	        // symmetry
-    	        List<Move<ExtendableTicTacToe>> all = new ArrayList<>(cur.moves(player));
-    	        List<Move<ExtendableTicTacToe>> legal = new ArrayList<>();
-    	        for (Move<ExtendableTicTacToe> m : all) {
-    	            EState nxt = (EState) cur.next(m);
-    	            String norm = nxt.getPosition().normalize();
-    	            if (!visited.contains(norm)) legal.add(m);
+    	        int n = board.moves(player, all);
+    	        long begin = stats == null ? 0 : System.nanoTime();
+    	        int legals = 0;
+    	        for (int k = 0; k < n; k++) {
+    	            board.make(all[k]);
+    	            if (!contains(visited, seen, board.canonical())) legal[legals++] = all[k];
+    	            board.unmake();
+    	        }
+    	        if (stats != null) {
+    	            long now = System.nanoTime();
+    	            canonicals += n;
+    	            canonical += now - begin;
+    	            begin = now;
     	        }
-    	        if (legal.isEmpty()) break;
+    	        if (legals == 0) break;
 
     	        //immediate win
-    	        Move<ExtendableTicTacToe> best = null;
-    	        for (Move<ExtendableTicTacToe> m : legal) {
-    	            EState nxt = (EState) cur.next(m);
-    	            if (nxt.winner().isPresent() && nxt.winner().get() == player) {
-    	                best = m;
-    	                break;
-    	            }
+    	        int best = -1;
+    	        int k0 = 0;
+    	        for (; k0 < legals && best < 0; k0++) {
+    	            board.make(legal[k0]);
+    	            if (board.winner() == player) best = legal[k0];
+    	            board.unmake();
     	        }
+    	        lookAheads += k0;
 
     	        // opponent’s immediate win
-    	        if (best == null) {
-    	            int opp = 1 - player;
-    	            for (Move<ExtendableTicTacToe> m : legal) {
-    	                EState nxt = (EState) cur.next(m);
-    	                for (Move<ExtendableTicTacToe> om : nxt.moves(opp)) {
-    	                    EState on = (EState) nxt.next(om);
-    	                    if (on.winner().isPresent() && on.winner().get() == opp) {
-    	                        best = m;
-    	                        break;
-    	                    }
-    	                }
-    	                if (best != null) break;
+    	        int opp = 1 - player;
+    	        for (int k = 0; k < legals && best < 0; k++) {
+    	            board.make(legal[k]);
+    	            int m = board.moves(opp, replies);
+    	            int r = 0;
+    	            for (; r < m && best < 0; r++) {
+    	                board.make(replies[r]);
+    	                if (board.winner() == opp) best = legal[k];
+    	                board.unmake();
     	            }
+    	            board.unmake();
+    	            lookAheads += r;
+    	        }
+    	        if (stats != null) {
+    	            long now = System.nanoTime();
+    	            lookAhead += now - begin;
+    	            begin = now;
     	        }
 
     	        // 2‑in‑a‑row threats
-    	        if (best == null) {
-    	            int opp = 1 - player;
-    	            for (Move<ExtendableTicTacToe> m : legal) {
-    	                EState nxt = (EState) cur.next(m);
-    	                if (twoInARowThreatCheck(nxt.getPosition(), opp)) {
-    	                    best = m;
-    	                    break;
-    	                }
-    	            }
+    	        for (int k = 0; k < legals && best < 0; k++) {
+    	            board.make(legal[k]);
+    	            if (twoInARowThreatCheck(board, opp)) best = legal[k];
+    	            board.unmake();
+    	            threats++;
     	        }
+    	        if (stats != null) threat += System.nanoTime() - begin;
 
     	        // fallback random
-    	        if (best == null) {
-    	            best = legal.get(random.nextInt(legal.size()));
+    	        if (best < 0) {
+    	            best = legal[random.nextInt(legals)];
     	        }
 
     	        // advance
-    	        cur = (EState) cur.next(best);
-    	        visited.add(cur.getPosition().normalize());
+    	        board.make(best);
+    	        visited[seen++] = board.canonical();
+    	        canonicals++;
     	        player = 1 - player;
     	        depth++;
     	    }
+    	    if (stats != null) {
+    	        stats.record("canonical", canonicals, canonical);
+    	        stats.record("look-ahead", lookAheads, lookAhead);
+    	        stats.record("threats", threats, threat);
+    	    }
 
-    	    // score bonus
-    	    int before = evaluate(state, mctsPlayer);
-    	    int after = evaluate(cur,   mctsPlayer);
+    	    return depth == 0 ? state : state.game().new EState(board.position());
+    }
+
+    /** Whether the first n elements of keys include key */
+    private static boolean contains(long[] keys, int n, long key) {
+        for (int i = 0; i < n; i++) if (keys[i] == key) return true;
+        return false;
+    }
+
+    /** Score a rollout: change in evaluation from start to end, with a bonus if MCTS has won */
+    private int score(State<ExtendableTicTacToe> start, State<ExtendableTicTacToe> end) {
+    	    int before = evaluate(start, mctsPlayer);
+    	    int after = evaluate(end,   mctsPlayer);
     	    int score = after - before;
-    	    if (cur.winner().isPresent() && cur.winner().get() == mctsPlayer) {
+    	    if (end.winner().isPresent() && end.winner().get() == mctsPlayer) {
     	        score += 100;
     	    }
     	    return score;
     }
     
     
-    private boolean twoInARowThreatCheck(ExtendablePosition pos, int player) {
+    private boolean twoInARowThreatCheck(ExtendableBoard pos, int player) {
         int r0 = pos.getRowMin(), r1 = pos.getRowMax();
         int c0 = pos.getColMin(), c1 = pos.getColMax();
 
         // horizontal 
         for (int r = r0; r + 2 < r1; r++) {
             for (int c = c0; c + 2 < c1; c++) {
-                int[] triple = { pos.get(r, c),
-                                 pos.get(r, c+1),
-                                 pos.get(r, c+2) };
-                if (twoInARow(triple, player) > 0) {
+                if (twoInARow(pos.get(r, c), pos.get(r, c+1), pos.get(r, c+2), player)) {
                     return true;
                 }
             }
@@ -203,10 +234,7 @@ public class MCTS {
         // vertical
         for (int c = c0; c + 2 < c1; c++) {
             for (int r = r0; r + 2 < r1; r++) {
-                int[] triple = { pos.get(r,   c),
-                                 pos.get(r+1, c),
-                                 pos.get(r+2, c) };
-                if (twoInARow(triple, player) > 0) {
+                if (twoInARow(pos.get(r, c), pos.get(r+1, c), pos.get(r+2, c), player)) {
                     return true;
                 }
             }
@@ -215,13 +243,8 @@ public class MCTS {
         // diagonal  (\ and /)
         for (int r = r0; r + 2 < r1; r++) {
             for (int c = c0; c + 2 < c1; c++) {
-                int[] d1 = { pos.get(r,   c),
-                             pos.get(r+1, c+1),
-                             pos.get(r+2, c+2) };
-                int[] d2 = { pos.get(r+2, c),
-                             pos.get(r+1, c+1),
-                             pos.get(r,   c+2) };
-                if (twoInARow(d1, player) > 0 || twoInARow(d2, player) > 0) {
+                if (twoInARow(pos.get(r, c), pos.get(r+1, c+1), pos.get(r+2, c+2), player)
+                 || twoInARow(pos.get(r+2, c), pos.get(r+1, c+1), pos.get(r, c+2), player)) {
                     return true;
                 }
             }
@@ -229,6 +252,13 @@ public class MCTS {
 
         return false;
     }
+
+    /** Whether the cells a, b and c are two of player's and one empty (cf. twoInARow(int[], int)) */
+    private static boolean twoInARow(int a, int b, int c, int player) {
+        int cP = (a == player ? 1 : 0) + (b == player ? 1 : 0) + (c == player ? 1 : 0);
+        int cB = (a == -1 ? 1 : 0) + (b == -1 ? 1 : 0) + (c == -1 ? 1 : 0);
+        return cP == 2 && cB == 1;
+    }
     
   //mimic weights and formula we experimented in classic ttt
     private int evaluate(State<ExtendableTicTacToe> s, int player) {
@@ -294,13 +324,6 @@ public class MCTS {
     
     
     
-    /** Pick the child with highest win-rate */
-    private Node<ExtendableTicTacToe> bestChild(Node<ExtendableTicTacToe> node) {
-        return node.children().stream()
-                .max(Comparator.comparing(c -> (double) c.wins() / c.playouts()))
-                .orElseThrow();
-    }
-
     /**
      * Console UI & game loop
      */
@@ -319,17 +342,19 @@ public class MCTS {
             System.out.println("MCTS goes first.");
         }
         boolean humanplay = false;
+        MCTS mcts = null; // kept from move to move so that the subtree under the human's reply is reused
         
         while (!state.isTerminal()) {
             if (humanplay) {
             	state = humanMove(state, scanner);
             }else {
-            	Node<ExtendableTicTacToe> root = new ETTTNode(state);
-                MCTS mcts = new MCTS(root, humanFirst);
+            	if (mcts == null) mcts = new MCTS(new ETTTNode(state), humanFirst);
+            	else mcts.reroot(state);
                 
                 long startTime = System.currentTimeMillis();
                 
-                state = mcts.run(10000).state();
+                // one tree shared by all cores, so that it can be reused next move
+                state = mcts.search().runTreeParallel(10000, Runtime.getRuntime().availableProcessors(), VIRTUAL_LOSS).state();
                 
                 // End timing
                 long endTime = System.currentTimeMillis();
@@ -387,4 +412,12 @@ public class MCTS {
         int idx = scanner.nextInt();
         return state.next(moves.get(idx));
     }
-}
\ No newline at end of file
+
+    /** The scratch space of the rollouts on one thread */
+    private static class Scratch {
+        private final ExtendableBoard board = new ExtendableBoard();
+        private final long[] visited = new long[5];
+        // at most 81 places and 8 extensions
+        private final int[] all = new int[89], legal = new int[89], replies = new int[89];
+    }
+}
@@ -74,6 +74,14 @@ public class TicTacToeNode implements Node<TicTacToe> {
         this.wins += score;
     }
 
+    /*
+     * increment playouts and wins by the results of several playouts
+     */
+    public void increment(int wins, int playouts) {
+        this.playouts += playouts;
+        this.wins += wins;
+    }
+
     /**
      * @return the score for this Node and its descendents a win is worth 2 points, a draw is worth 1 point.
      */